@@ -0,0 +1,159 @@
+package com.snd.semiprime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Level-synchronous beam search: every node of the current depth is expanded
+ * and only the width lowest-h children are kept for the next depth. The search
+ * fails, rather than backtracking, once a level comes up empty.
+ *
+ * Each level is one fork/join task tree. Leaves expand a slice of the level and
+ * keep their own best width children in a bounded heap; joins merge two such
+ * lists back down to width, so selection is a parallel partial sort that never
+ * orders more than it keeps. Memory stays at about width nodes per level.
+ *
+ * @param <T> node type
+ */
+public class BeamSearch<T>
+{
+  public static final int DEFAULT_SLICE = 32; ///< nodes a leaf task expands before splitting no further
+
+  private final ForkJoinPool                pool;
+  private final int                         width;
+  private final ToDoubleFunction<? super T> h;
+  private final Comparator<T>               best;
+  private final Predicate<T>                goal;
+  private final BooleanSupplier             done;
+
+  private volatile boolean found  = false;
+  private volatile int     levels = 0;
+  private volatile int     size   = 0; ///< nodes in the current level
+
+  /**
+   * @param pool runs the expansion and selection of each level
+   * @param width most nodes kept per level
+   * @param h priority of a node
+   * @param goal goal test, which also records the goal
+   * @param done true once the search should stop, e.g. a goal was found elsewhere
+   */
+  public BeamSearch(ForkJoinPool pool, int width, ToDoubleFunction<? super T> h, Predicate<T> goal, BooleanSupplier done)
+  {
+    if (width < 1) throw new IllegalArgumentException("invalid beam width: " + width);
+
+    this.pool = pool;
+    this.width = width;
+    this.h = h;
+    this.best = Comparator.comparingDouble(h);
+    this.goal = goal;
+    this.done = done;
+  }
+
+  /**
+   * Searches level by level until the goal is found or the beam runs dry.
+   * @param root root of the search
+   * @param expand appends the valid children of a node to a list
+   * @param hold parks the calling thread for as long as the search is paused
+   * @return true if the goal was found
+   * @throws InterruptedException if interrupted between levels
+   */
+  public boolean search(T root, BiConsumer<T, List<T>> expand, Runnable hold) throws InterruptedException
+  {
+    if (goal.test(root)) return found = true;
+
+    List<T> level = Collections.singletonList(root);
+    while (!level.isEmpty() && !found && !done.getAsBoolean())
+    {
+      level = pool.invoke(new Level(level, 0, level.size(), expand));
+      size = level.size();
+      ++levels;
+
+      hold.run();
+      if (Thread.interrupted()) throw new InterruptedException();
+    }
+    return found;
+  }
+
+  public int width() { return width; }
+  public int levels() { return levels; }
+  public int size() { return size; }
+
+  /**
+   * @param a the best nodes of one slice
+   * @param b the best nodes of another slice
+   * @return the width best nodes of both
+   */
+  private List<T> merge(List<T> a, List<T> b)
+  {
+    if (a.isEmpty()) return b;
+    if (b.isEmpty()) return a;
+    if (a.size() + b.size() <= width) { a.addAll(b); return a; }
+    return select(a, b);
+  }
+
+  /**
+   * @param lists nodes to select from
+   * @return the width best nodes, unordered
+   */
+  @SafeVarargs
+  private final List<T> select(List<T>... lists)
+  {
+    // max-heap on h, so the worst kept node is always the one to replace
+    final PriorityQueue<T> kept = new PriorityQueue<>(width + 1, best.reversed());
+    for (List<T> list : lists)
+    {
+      for (T n : list)
+      {
+        if (kept.size() < width) kept.add(n);
+        else if (best.compare(n, kept.peek()) < 0) { kept.poll(); kept.add(n); }
+      }
+    }
+    return new ArrayList<>(kept);
+  }
+
+  /**
+   * Expands level[from, to) and returns the best width children.
+   */
+  private final class Level extends RecursiveTask<List<T>>
+  {
+    private static final long serialVersionUID = 1L; ///< tasks are never serialized; declared since RecursiveTask is Serializable
+
+    private final List<T>                level;
+    private final int                    from, to;
+    private final BiConsumer<T, List<T>> expand;
+
+    Level(List<T> level, int from, int to, BiConsumer<T, List<T>> expand)
+    {
+      this.level = level;
+      this.from = from;
+      this.to = to;
+      this.expand = expand;
+    }
+
+    @Override protected List<T> compute()
+    {
+      if (to - from > DEFAULT_SLICE)
+      {
+        final int mid = (from + to) >>> 1;
+        final Level left = new Level(level, from, mid, expand);
+        left.fork();
+        final List<T> right = new Level(level, mid, to, expand).compute();
+        return merge(left.join(), right);
+      }
+
+      final List<T> children = new ArrayList<>((to - from) << 2);
+      for (int i = from; i < to && !found && !done.getAsBoolean(); ++i) expand.accept(level.get(i), children);
+      for (T n : children) if (goal.test(n)) { found = true; return new ArrayList<>(); }
+      return children.size() > width ? select(children) : children;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.snd.semiprime;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Frontier that quantizes h into a fixed number of FIFO buckets over [0, max].
+ * Values outside the range are clamped to the first or last bucket.
+ *
+ * Each bucket is its own lock-free queue, so workers only contend when they
+ * touch the same bucket. An atomic cursor tracks the lowest bucket that may
+ * be non-empty: offer lowers it, and poll advances it past empty buckets.
+ * Order within a bucket is FIFO, so the search is best-first only up to the
+ * bucket width.
+ *
+ * @param <T> node type
+ */
+public class BucketFrontier<T> implements Frontier<T>
+{
+  public static final double DEFAULT_MAX = 2.0; ///< built-in heuristics are bounded by about 2
+
+  private final ConcurrentLinkedQueue<T>[] buckets;
+  private final ToDoubleFunction<? super T> h;
+  private final double                      scale;
+  private final AtomicInteger               min  = new AtomicInteger(0); ///< no bucket below this holds a node
+  private final LongAdder                   size = new LongAdder();
+
+  public BucketFrontier(int buckets, ToDoubleFunction<? super T> h) { this(buckets, DEFAULT_MAX, h); }
+
+  @SuppressWarnings("unchecked")
+  public BucketFrontier(int buckets, double max, ToDoubleFunction<? super T> h)
+  {
+    if (buckets < 1) throw new IllegalArgumentException("invalid bucket count: " + buckets);
+    if (!(max > 0)) throw new IllegalArgumentException("invalid max h: " + max);
+
+    this.buckets = (ConcurrentLinkedQueue<T>[]) new ConcurrentLinkedQueue<?>[buckets];
+    for (int i = 0; i < buckets; ++i) this.buckets[i] = new ConcurrentLinkedQueue<>();
+    this.h = h;
+    this.scale = buckets / max;
+  }
+
+  /**
+   * @param h a heuristic value
+   * @return the bucket index h falls into
+   */
+  int bucket(double h)
+  {
+    if (!(h > 0)) return 0; // also catches NaN
+    final double b = h * scale;
+    return b >= buckets.length ? buckets.length-1 : (int) b;
+  }
+
+  @Override public boolean offer(T t)
+  {
+    final int b = bucket(h.applyAsDouble(t));
+    if (!buckets[b].offer(t)) return false;
+    size.increment();
+    lower(b);
+    return true;
+  }
+
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    // buckets are lock-free already; batching just moves the cursor once
+    int lowest = buckets.length; boolean accepted = true;
+    for (T t : ts)
+    {
+      final int b = bucket(h.applyAsDouble(t));
+      if (buckets[b].offer(t)) { lowest = Math.min(lowest, b); size.increment(); }
+      else accepted = false;
+    }
+    if (lowest < buckets.length) lower(lowest);
+    return accepted;
+  }
+
+  @Override public T poll()
+  {
+    for (int b = min.get(); b < buckets.length; ++b)
+    {
+      final T t = buckets[b].poll();
+      if (null != t) { size.decrement(); return t; }
+
+      // advance past the empty bucket; an offer racing w/us will lower the cursor again
+      if (min.compareAndSet(b, b+1) && !buckets[b].isEmpty()) lower(b);
+    }
+    return null;
+  }
+
+  /**
+   * Empties the highest buckets first; the min cursor is left alone, since it
+   * only has to be a lower bound.
+   */
+  @Override public int drainWorst(Collection<? super T> to, int max)
+  {
+    int n = 0;
+    for (int b = buckets.length-1; b >= 0 && n < max; --b)
+      for (T t; n < max && null != (t = buckets[b].poll()); ++n) to.add(t);
+    size.add(-n);
+    return n;
+  }
+
+  @Override public int snapshot(Collection<? super T> to)
+  {
+    int n = 0;
+    for (ConcurrentLinkedQueue<T> bucket : buckets) for (T t : bucket) { to.add(t); ++n; }
+    return n;
+  }
+
+  private void lower(int b)
+  {
+    int cur;
+    while (b < (cur = min.get()) && !min.compareAndSet(cur, b)) ;
+  }
+
+  @Override public int size() { return (int) size.sum(); }
+
+  @Override public void clear()
+  {
+    for (ConcurrentLinkedQueue<T> bucket : buckets) bucket.clear();
+    size.reset();
+    min.set(0);
+  }
+}
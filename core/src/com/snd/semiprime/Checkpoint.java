@@ -0,0 +1,238 @@
+package com.snd.semiprime;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot of a best-first search on disk: the target and the settings that
+ * shape its tree, the search counters, then every open node as one
+ * {@link NodeCodec} record. Nodes spilled to disk are already records, so
+ * their run files are copied in as they are.
+ *
+ * A checkpoint is streamed to a temporary file through a small direct buffer
+ * and moved over the previous one only once complete, so a crash mid-write
+ * still leaves the last good checkpoint. Records are read back through a
+ * sliding memory-mapped window and handed out in batches.
+ */
+public class Checkpoint
+{
+  public static final int MAGIC          = 0x53504b31; ///< "SPK1"
+  public static final int VERSION        = 1;
+  public static final int DEFAULT_BUFFER = 1 << 20; ///< write buffer
+  public static final int DEFAULT_WINDOW = 64 << 20; ///< bytes of the file mapped at once
+  public static final int DEFAULT_BATCH  = 4096; ///< nodes handed out per load callback
+
+  // target configuration
+  public final BigInteger      s;
+  public final int             internalBase;
+  public final int             pLength;
+  public final int             qLength;
+  public final boolean         fixedWidth; ///< records are in the fixed-width engine's format
+  public final List<Heuristic> heuristics;
+
+  // counters
+  public final long generated;
+  public final long regenerated;
+  public final long ignored;
+  public final long expanded;
+  public final long totalDepth;
+  public final int  maxDepth;
+  public final long elapsed; ///< nanoseconds searched before this checkpoint
+
+  public final long nodes; ///< records following the header
+
+  private final Path file;
+  private final long offset; ///< file offset of the first record
+
+  Checkpoint(BigInteger s, int internalBase, int pLength, int qLength, boolean fixedWidth, List<Heuristic> heuristics,
+             long generated, long regenerated, long ignored, long expanded, long totalDepth, int maxDepth, long elapsed, long nodes)
+  {
+    this(s, internalBase, pLength, qLength, fixedWidth, heuristics, generated, regenerated, ignored, expanded, totalDepth, maxDepth, elapsed, nodes, null, 0);
+  }
+
+  private Checkpoint(BigInteger s, int internalBase, int pLength, int qLength, boolean fixedWidth, List<Heuristic> heuristics,
+                     long generated, long regenerated, long ignored, long expanded, long totalDepth, int maxDepth, long elapsed, long nodes,
+                     Path file, long offset)
+  {
+    this.s = s;
+    this.internalBase = internalBase;
+    this.pLength = pLength;
+    this.qLength = qLength;
+    this.fixedWidth = fixedWidth;
+    this.heuristics = Collections.unmodifiableList(new ArrayList<>(heuristics));
+    this.generated = generated;
+    this.regenerated = regenerated;
+    this.ignored = ignored;
+    this.expanded = expanded;
+    this.totalDepth = totalDepth;
+    this.maxDepth = maxDepth;
+    this.elapsed = elapsed;
+    this.nodes = nodes;
+    this.file = file;
+    this.offset = offset;
+  }
+
+  /**
+   * Writes this header followed by nodes, replacing file only once everything is on disk.
+   * @param file checkpoint to write
+   * @param nodes the open nodes; must hold exactly {@link #nodes} nodes
+   * @param codec encodes the nodes
+   * @return bytes written
+   * @throws IOException if the checkpoint could not be written; file is left untouched
+   */
+  public <T> long write(Path file, Collection<T> nodes, NodeCodec<T> codec) throws IOException { return write(file, nodes, codec, null); }
+
+  /**
+   * Writes this header followed by nodes and then the spilled records, replacing
+   * file only once everything is on disk.
+   * @param file checkpoint to write
+   * @param nodes the open nodes in memory
+   * @param codec encodes the nodes; the spilled records must be in the same format
+   * @param spilled the rest of the open nodes, still encoded, or null if none; together w/nodes exactly {@link #nodes} nodes
+   * @return bytes written
+   * @throws IOException if the checkpoint could not be written; file is left untouched
+   */
+  public <T> long write(Path file, Collection<T> nodes, NodeCodec<T> codec, SpillFrontier.Runs spilled) throws IOException
+  {
+    final long count = nodes.size() + (null != spilled ? spilled.nodes() : 0);
+    if (count != this.nodes) throw new IllegalArgumentException("expected " + this.nodes + " nodes, got " + count);
+
+    final Path parent = file.toAbsolutePath().getParent();
+    if (null != parent) Files.createDirectories(parent);
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    long length = 0;
+    try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+    {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(DEFAULT_BUFFER, codec.maxBytes()));
+      writeHeader(buffer);
+      for (T n : nodes)
+      {
+        if (buffer.remaining() < codec.bytes(n)) length += flush(channel, buffer);
+        codec.write(n, buffer);
+      }
+      length += flush(channel, buffer);
+      if (null != spilled) length += spilled.transferTo(channel);
+      channel.force(false);
+    }
+
+    try { Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+    catch (IOException e) { Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING); }
+    return length;
+  }
+
+  /**
+   * @param file checkpoint to read
+   * @return the checkpoint's header; its nodes are read by {@link #load}
+   * @throws IOException if the file is unreadable or not a checkpoint
+   */
+  public static Checkpoint read(Path file) throws IOException
+  {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      final MappedByteBuffer from = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(DEFAULT_WINDOW, channel.size()));
+      if (from.remaining() < 8 || MAGIC != from.getInt()) throw new IOException("not a checkpoint: " + file);
+      final int version = from.getInt();
+      if (VERSION != version) throw new IOException("unsupported checkpoint version " + version + ": " + file);
+
+      final byte[] target = new byte[from.getInt()];
+      from.get(target);
+      final BigInteger s = new BigInteger(target);
+      final int internalBase = from.getInt(), pLength = from.getInt(), qLength = from.getInt();
+      final boolean fixedWidth = 0 != from.get();
+
+      final List<Heuristic> heuristics = new ArrayList<>();
+      for (int i = from.getInt(); i > 0; --i)
+      {
+        final byte[] name = new byte[from.getInt()];
+        from.get(name);
+        heuristics.add(Heuristic.valueOf(new String(name, StandardCharsets.UTF_8)));
+      }
+
+      final long generated = from.getLong(), regenerated = from.getLong(), ignored = from.getLong(), expanded = from.getLong(), totalDepth = from.getLong();
+      final int maxDepth = from.getInt();
+      final long elapsed = from.getLong(), nodes = from.getLong();
+
+      return new Checkpoint(s, internalBase, pLength, qLength, fixedWidth, heuristics,
+          generated, regenerated, ignored, expanded, totalDepth, maxDepth, elapsed, nodes, file, from.position());
+    }
+    catch (IllegalArgumentException | BufferUnderflowException e) { throw new IOException("corrupt checkpoint: " + file, e); }
+  }
+
+  /**
+   * Decodes every record of a checkpoint returned by {@link #read}.
+   * @param codec decodes the records; must match the format they were written in
+   * @param sink receives the nodes in batches of up to {@link #DEFAULT_BATCH}
+   * @return nodes read
+   * @throws IOException if the file is unreadable or truncated
+   */
+  public <T> long load(NodeCodec<T> codec, Consumer<List<T>> sink) throws IOException
+  {
+    if (null == file) throw new IllegalStateException("checkpoint was not read from a file");
+
+    long read = 0;
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      final long length = channel.size();
+      long position = offset;
+      MappedByteBuffer window = null;
+      final List<T> batch = new ArrayList<>(DEFAULT_BATCH);
+
+      for (; read < nodes; ++read)
+      {
+        // slide the window once the next record might straddle its end
+        if (null == window || (window.remaining() < codec.maxBytes() && position + window.limit() < length))
+        {
+          position += null != window ? window.position() : 0;
+          window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(DEFAULT_WINDOW, length - position));
+        }
+
+        batch.add(codec.read(window));
+        if (batch.size() == DEFAULT_BATCH) { sink.accept(batch); batch.clear(); }
+      }
+      if (!batch.isEmpty()) sink.accept(batch);
+    }
+    catch (BufferUnderflowException e) { throw new IOException("checkpoint truncated after " + read + " of " + nodes + " nodes: " + file, e); }
+    return read;
+  }
+
+  private void writeHeader(ByteBuffer to)
+  {
+    final byte[] target = s.toByteArray();
+    to.putInt(MAGIC).putInt(VERSION);
+    to.putInt(target.length).put(target);
+    to.putInt(internalBase).putInt(pLength).putInt(qLength).put((byte) (fixedWidth ? 1 : 0));
+    to.putInt(heuristics.size());
+    for (Heuristic heuristic : heuristics)
+    {
+      final byte[] name = heuristic.name().getBytes(StandardCharsets.UTF_8);
+      to.putInt(name.length).put(name);
+    }
+    to.putLong(generated).putLong(regenerated).putLong(ignored).putLong(expanded).putLong(totalDepth);
+    to.putInt(maxDepth);
+    to.putLong(elapsed).putLong(nodes);
+  }
+
+  private static long flush(FileChannel channel, ByteBuffer buffer) throws IOException
+  {
+    buffer.flip();
+    final long n = buffer.remaining();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+    return n;
+  }
+}
@@ -2,18 +2,19 @@ package com.snd.semiprime;
 
 import java.lang.reflect.Constructor;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
@@ -24,33 +25,46 @@ public class CompactSolver implements Runnable
 
     private Class<? extends Node>             nodeClass;
     private Constructor<Node>                 nodeConstructor;
+    private NodeFactory                       nodeFactory;
 
     private final Lock                        lock;
     private final Condition                   stop;
     private final List<Thread>                threads;
     private final List<Heuristic>             heuristics;
-    private final PriorityBlockingQueue<Node> open;
+    private       Frontier<Node>              open;
+    private       Frontier.Type               frontier;
     private final AtomicLong                  expanded;
     private final AtomicBoolean               solving;
     private final AtomicReference<Node>       solution;
     private       int                         numThreads;
+    private       int                         buckets;
+    private       int                         batchSize;
     private       int                         maxDepth;
+    private       boolean                     arena;
+    private final NodeArena                   nodes;
+    private final IntHeap                     heap;
+    private final MaterializationCache        materialized; ///< off until cacheBudget() gives it memory
 
     BigInteger semiprime;
+    HeuristicFunction.Target target;
 
     public CompactSolver()
     {
-        this.nodeClass = PerformanceNode.class;
-        this.nodeConstructor = (Constructor<Node>) this.nodeClass.getConstructors()[0];
+        this.nodeClass(PerformanceNode.class);
         this.lock = new ReentrantLock();
         this.stop = lock.newCondition();
         this.threads = Collections.synchronizedList(new ArrayList<>());
         this.heuristics = new ArrayList<>();
-        this.open = new PriorityBlockingQueue<>();
+        this.frontier = Frontier.Type.HEAP;
+        this.open = frontier.create(1, 0, Node::h);
         this.expanded = new AtomicLong(0);
         this.solving = new AtomicBoolean(false);
         this.solution = new AtomicReference<>();
         this.numThreads = Runtime.getRuntime().availableProcessors();
+        this.buckets = 4096;
+        this.nodes = new NodeArena();
+        this.heap = new IntHeap();
+        this.materialized = new MaterializationCache(0);
     }
 
     @Override
@@ -58,15 +72,21 @@ public class CompactSolver implements Runnable
     {
         // clear data from previous search
         stop().clear();
+        open = frontier.create(numThreads, buckets, Node::h, new NodeFormat());
 
         // prepare search threads
-        IntStream.range(0, numThreads).forEach(i -> threads.add(new Thread(this::solve)));
+        IntStream.range(0, numThreads).forEach(i -> threads.add(new Thread(arena ? this::solveArena : () -> { open.bind(i); solve(); })));
         threads.forEach(thread -> thread.setUncaughtExceptionHandler(handler));
 
         // setup the search
         solving.set(true);
         //open.add(new CompactNode(null, true, true));
-        open.add(newNode(null, 1, 1));
+        if (arena) {
+            int root = nodes.allocate(1);
+            nodes.set(root, NodeArena.NONE, 1, 1, 0, 0);
+            heap.offer(0, root);
+        }
+        else open.offer(newNode(null, 1, 1));
 
         // launch all worker threads and wait for completion
         lock.lock();
@@ -83,16 +103,86 @@ public class CompactSolver implements Runnable
         return this;
     }
 
+    /**
+     * Select the open list implementation used by the next run.
+     * @param frontier strict (HEAP) or one of the relaxed/concurrent frontiers
+     * @return this for chaining
+     */
+    public CompactSolver frontier(Frontier.Type frontier)
+    {
+        this.frontier = frontier;
+        return this;
+    }
+
+    /**
+     * @param batchSize nodes popped per frontier call; 0 sizes it from the thread count
+     * @return this for chaining
+     */
+    public CompactSolver batch(int batchSize)
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param buckets h resolution used when the frontier is {@link Frontier.Type#BUCKETED}
+     * @return this for chaining
+     */
+    public CompactSolver buckets(int buckets)
+    {
+        this.buckets = buckets;
+        return this;
+    }
+
+    /**
+     * Keep nodes in a {@link NodeArena} w/a primitive {@link IntHeap} as the open list,
+     * instead of node objects in a {@link Frontier}. The node class and frontier type
+     * are ignored while this is set.
+     * @param arena true to search w/the arena
+     * @return this for chaining
+     */
+    public CompactSolver arena(boolean arena)
+    {
+        this.arena = arena;
+        return this;
+    }
+
+    /**
+     * Lets {@link CompactNode}s rebuild their factors from a cached ancestor instead
+     * of the root. The cache is off by default, so a search only spends memory on it
+     * when asked to.
+     * @param bytes memory the materialization cache may use; 0, the default, disables it
+     * @return this for chaining
+     */
+    public CompactSolver cacheBudget(long bytes)
+    {
+        materialized.budget(bytes);
+        return this;
+    }
+
+    /**
+     * @return approximate bytes currently held by the materialization cache
+     */
+    public long cachedBytes()
+    {
+        return materialized.bytes();
+    }
+
     public CompactSolver nodeClass(Class<? extends Node> klass)
     {
         this.nodeClass = klass;
         this.nodeConstructor = (Constructor<Node>) klass.getConstructors()[0];
+
+        // built-in node classes skip reflection
+        if (PerformanceNode.class == klass) this.nodeFactory = PerformanceNode::new;
+        else if (CompactNode.class == klass) this.nodeFactory = CompactNode::new;
+        else this.nodeFactory = (parent, p, q) -> nodeConstructor.newInstance(this, parent, p, q);
         return this;
     }
 
     private Node newNode(Node parent, int p, int q)
     {
-        try { return nodeConstructor.newInstance(this, parent, p, q); }
+        try { return nodeFactory.create(parent, p, q); }
         catch (Throwable t) { Log.e(t); return null; }
     }
 
@@ -111,6 +201,7 @@ public class CompactSolver implements Runnable
     public CompactSolver goal(BigInteger semiprime)
     {
         this.semiprime = semiprime;
+        this.target = new HeuristicFunction.Target(semiprime);
         this.maxDepth = semiprime.bitLength()-1;
         return this;
     }
@@ -122,7 +213,23 @@ public class CompactSolver implements Runnable
 
     public int open()
     {
-        return open.size();
+        return arena ? heap.size() : open.size();
+    }
+
+    /**
+     * @return nodes ever stored in the arena by the last arena search, open or expanded
+     */
+    public int arenaSize()
+    {
+        return nodes.size();
+    }
+
+    /**
+     * @return bytes held by the arena and its heap
+     */
+    public long arenaBytes()
+    {
+        return nodes.bytes() + heap.bytes();
     }
 
     public Node solution()
@@ -160,6 +267,9 @@ public class CompactSolver implements Runnable
     {
         threads.clear();
         open.clear();
+        nodes.clear();
+        heap.clear();
+        materialized.clear();
         expanded.set(0);
         solution.set(null);
         return this;
@@ -172,75 +282,242 @@ public class CompactSolver implements Runnable
 
     public CompactSolver solve()
     {
+        final int        size     = 0 < batchSize ? batchSize : Solver.autoBatch(numThreads);
+        final List<Node> batch    = new ArrayList<>(size);
+        final List<Node> children = new ArrayList<>(size << 2);
+
         while (solving.get())
         {
-            // grab best node from open
-            Node n;
-            try { n = open.take(); } catch (Throwable t) { return this; }
+            // grab the best nodes from open in one call
+            try
+            {
+                while (0 == open.drainTo(batch, size))
+                {
+                    Node n = open.poll(1, TimeUnit.MILLISECONDS);
+                    if (null != n) { batch.add(n); break; }
+                    if (!solving.get()) return this;
+                }
+            }
+            catch (Throwable t) { return this; }
 
-            // update expanded counter
-            expanded.incrementAndGet();
+            // expand the whole batch, then push all children in one call
+            for (Node n : batch) if (expand(n, children)) return this;
+            if (!open.offerAll(children)) {
+                Log.e("children rejected");
+            }
 
-            // skip nodes that are too large
-            int depth = n.depth()+1;
-            if (depth > maxDepth) continue;
+            batch.clear();
+            children.clear();
+        }
 
-            // grab factors for pruning behavior
-            BigInteger p = n.p();
-            BigInteger q = n.q();
+        return this;
+    }
 
-            // expand n
-            for (int pBit = 0; pBit < 2; ++pBit) {
-                for (int qBit = 0; qBit < 2; ++qBit)
-                {
-                    // prune mirror image factors
-                    if (pBit > qBit && p.equals(q)) continue;
-
-                    // prune factors that can't produce a solution
-                    BigInteger newP = 0 != pBit ? p.setBit(depth) : p;
-                    BigInteger newQ = 0 != qBit ? q.setBit(depth) : q;
-                    BigInteger s = newP.multiply(newQ);
-                    if (s.testBit(depth) != semiprime.testBit(depth)) continue;
-
-                    // build new node
-                    Node child = newNode(n, pBit, qBit);
-
-                    // compare current s to goal
-                    int comp = s.compareTo(semiprime);
-
-                    // prune if too large
-                    if (comp > 0) continue;
-
-                    Log.o(child.toString());
-
-                    // goal check
-                    if (s.equals(semiprime)) {
-                        // skip degenerate solution of 1 * n = n
-                        if (newP.equals(BigInteger.ONE) || newQ.equals(BigInteger.ONE)) continue;
-
-                        // we found a real solution
-                        solving.set(false);
-                        solution.set(child);
-                        lock.lock();
-                        stop.signal();
-                        lock.unlock();
-                        return this;
-                    }
-
-                    //Log.o("bitA: " + s.testBit(depth) + ", bitB: " + semiprime.testBit(depth) + ", depth: " + depth + ", " + s.toString(2) + " " + semiprime.toString(2) + "\n" + child.toString() + " = " + s.toString() + " (" + s.toString(2) + ")");
-
-                    // push node to open
-                    if (!open.offer(child)) {
-                        Log.e("child rejected");
-                    }
+    /**
+     * Expands a single node.
+     * @param n node to expand
+     * @param children receives every child that may still lead to a solution
+     * @return true if a solution was found
+     */
+    private boolean expand(Node n, List<Node> children)
+    {
+        // update expanded counter
+        expanded.incrementAndGet();
+
+        // children will rebuild their factors from this one
+        if (n instanceof CompactNode) materialized.add((CompactNode) n);
+
+        // skip nodes that are too large
+        int depth = n.depth()+1;
+        if (depth > maxDepth) return false;
+
+        // grab factors for pruning behavior
+        BigInteger p = n.p();
+        BigInteger q = n.q();
+
+        // expand n
+        for (int pBit = 0; pBit < 2; ++pBit) {
+            for (int qBit = 0; qBit < 2; ++qBit)
+            {
+                // prune mirror image factors
+                if (pBit > qBit && p.equals(q)) continue;
+
+                // prune factors that can't produce a solution
+                BigInteger newP = 0 != pBit ? p.setBit(depth) : p;
+                BigInteger newQ = 0 != qBit ? q.setBit(depth) : q;
+                BigInteger s = newP.multiply(newQ);
+                if (s.testBit(depth) != semiprime.testBit(depth)) continue;
+
+                // build new node
+                Node child = newNode(n, pBit, qBit);
+
+                // compare current s to goal
+                int comp = s.compareTo(semiprime);
+
+                // prune if too large
+                if (comp > 0) continue;
+
+                // goal check
+                if (s.equals(semiprime)) {
+                    // skip degenerate solution of 1 * n = n
+                    if (newP.equals(BigInteger.ONE) || newQ.equals(BigInteger.ONE)) continue;
+
+                    // we found a real solution
+                    solved(child);
+                    return true;
                 }
+
+                //Log.o("bitA: " + s.testBit(depth) + ", bitB: " + semiprime.testBit(depth) + ", depth: " + depth + ", " + s.toString(2) + " " + semiprime.toString(2) + "\n" + child.toString() + " = " + s.toString() + " (" + s.toString(2) + ")");
+
+                // queue node for open
+                children.add(child);
+            }
+        }
+
+        return false;
+    }
+
+    private void solved(Node n)
+    {
+        solving.set(false);
+        solution.set(n);
+        lock.lock();
+        stop.signal();
+        lock.unlock();
+    }
+
+    /**
+     * Arena counterpart of {@link #solve()}: nodes are indices, and a batch's
+     * children are stored and queued w/one arena reservation and one heap call.
+     * @return this for chaining
+     */
+    public CompactSolver solveArena()
+    {
+        final int      size     = 0 < batchSize ? batchSize : Solver.autoBatch(numThreads);
+        final int[]    batch    = new int[size];
+        final Children children = new Children(size << 2);
+
+        while (solving.get())
+        {
+            // grab the best nodes from open in one call
+            int n;
+            try
+            {
+                while (0 == (n = heap.drainTo(batch, size, 1, TimeUnit.MILLISECONDS)))
+                    if (!solving.get()) return this;
             }
+            catch (Throwable t) { return this; }
+
+            for (int i = 0; i < n; ++i) if (expand(batch[i], children)) return this;
+            children.flush();
         }
 
         return this;
     }
 
-    public abstract class Node implements Comparable<Node>
+    /**
+     * Arena counterpart of {@link #expand(Node, List)}; p and q are rebuilt from the
+     * arena and each child is only wrapped in an {@link ArenaNode} to evaluate it.
+     * @param n index of the node to expand
+     * @param children receives every child that may still lead to a solution
+     * @return true if a solution was found
+     */
+    private boolean expand(int n, Children children)
+    {
+        expanded.incrementAndGet();
+
+        int depth = nodes.depth(n)+1;
+        if (depth > maxDepth) return false;
+
+        BigInteger[] factors = nodes.factors(n);
+        BigInteger p = factors[0];
+        BigInteger q = factors[1];
+
+        for (int pBit = 0; pBit < 2; ++pBit) {
+            for (int qBit = 0; qBit < 2; ++qBit)
+            {
+                if (pBit > qBit && p.equals(q)) continue;
+
+                BigInteger newP = 0 != pBit ? p.setBit(depth) : p;
+                BigInteger newQ = 0 != qBit ? q.setBit(depth) : q;
+                BigInteger s = newP.multiply(newQ);
+                if (s.testBit(depth) != semiprime.testBit(depth)) continue;
+                if (s.compareTo(semiprime) > 0) continue;
+
+                ArenaNode child = new ArenaNode(depth, newP, newQ, s);
+                if (s.equals(semiprime)) {
+                    if (newP.equals(BigInteger.ONE) || newQ.equals(BigInteger.ONE)) continue;
+                    solved(child);
+                    return true;
+                }
+
+                children.add(n, pBit, qBit, (float) child.h(), depth);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * One worker's children, buffered until the batch is done.
+     */
+    private final class Children
+    {
+        int[]   parents;
+        int[]   bits;
+        float[] hs;
+        int[]   depths;
+        int[]   indices;
+        int     size;
+
+        Children(int capacity)
+        {
+            parents = new int[capacity];
+            bits = new int[capacity];
+            hs = new float[capacity];
+            depths = new int[capacity];
+            indices = new int[capacity];
+        }
+
+        void add(int parent, int pBit, int qBit, float h, int depth)
+        {
+            if (size == parents.length) {
+                parents = Arrays.copyOf(parents, size << 1);
+                bits = Arrays.copyOf(bits, size << 1);
+                hs = Arrays.copyOf(hs, size << 1);
+                depths = Arrays.copyOf(depths, size << 1);
+                indices = Arrays.copyOf(indices, size << 1);
+            }
+            parents[size] = parent;
+            bits[size] = pBit | qBit << 1;
+            hs[size] = h;
+            depths[size] = depth;
+            ++size;
+        }
+
+        /**
+         * Stores the buffered children in the arena and queues them on the heap.
+         */
+        void flush()
+        {
+            if (0 == size) return;
+            int first = nodes.allocate(size);
+            for (int i = 0; i < size; ++i) {
+                indices[i] = first + i;
+                nodes.set(first + i, parents[i], bits[i] & 1, bits[i] >>> 1, hs[i], depths[i]);
+            }
+            heap.offerAll(hs, indices, size);
+            size = 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface NodeFactory
+    {
+        Node create(Node parent, int p, int q) throws Exception;
+    }
+
+    public abstract class Node implements Comparable<Node>, HeuristicFunction.NodeView
     {
         public abstract BigInteger p();
         public abstract BigInteger q();
@@ -250,6 +527,36 @@ public class CompactSolver implements Runnable
 
         public Node(Node parent, int p, int q) {}
 
+        @Override
+        public int pBitCount()
+        {
+            return p().bitCount();
+        }
+
+        @Override
+        public int qBitCount()
+        {
+            return q().bitCount();
+        }
+
+        @Override
+        public int pBitLength()
+        {
+            return p().bitLength();
+        }
+
+        @Override
+        public int qBitLength()
+        {
+            return q().bitLength();
+        }
+
+        @Override
+        public int hamming()
+        {
+            return s().xor(semiprime).bitCount();
+        }
+
         @Override
         public String toString()
         {
@@ -292,6 +599,17 @@ public class CompactSolver implements Runnable
             for (Heuristic heuristic : heuristics) this.h += heuristic.h(this);
         }
 
+        PerformanceNode(int depth, BigInteger p, BigInteger q, double h)
+        {
+            super(null, 0, 0);
+
+            this.depth = depth;
+            this.p = p;
+            this.q = q;
+            this.s = p.multiply(q);
+            this.h = h;
+        }
+
         @Override
         public BigInteger p()
         {
@@ -327,6 +645,7 @@ public class CompactSolver implements Runnable
     {
         CompactNode parent;
         boolean p, q;
+        Materialized cached; ///< set while this node is in the materialization cache
 
         public CompactNode(Node parent, int p, int q)
         {
@@ -337,34 +656,56 @@ public class CompactSolver implements Runnable
             this.q = 0 < q;
         }
 
-        @Override
-        public BigInteger p()
+        /**
+         * Rebuilds this node's factors, starting from the nearest cached ancestor
+         * instead of the root when there is one.
+         * @return p, q and depth of this node
+         */
+        Materialized materialize()
         {
-            StringBuilder sb = new StringBuilder();
+            Materialized base = cached;
+            if (null != base) return base;
+
+            // find the nearest cached ancestor
+            int steps = 0;
+            for (CompactNode cur = this; null != cur && null == (base = cur.cached); cur = cur.parent) ++steps;
+            int depth = null != base ? base.depth + steps : steps - 1;
+
+            // lay the bits below it out big-endian, in one pass
+            int len = (depth >>> 3) + 1;
+            byte[] p = new byte[len];
+            byte[] q = new byte[len];
             CompactNode cur = this;
-            while (cur != null) {
-                sb.append(cur.p ? '1' : '0');
-                cur = cur.parent;
+            for (int d = depth; d > depth - steps; --d, cur = cur.parent) {
+                if (cur.p) p[len - 1 - (d >>> 3)] |= 1 << (d & 7);
+                if (cur.q) q[len - 1 - (d >>> 3)] |= 1 << (d & 7);
+            }
+
+            BigInteger newP = new BigInteger(1, p);
+            BigInteger newQ = new BigInteger(1, q);
+            if (null != base) {
+                newP = newP.or(base.p);
+                newQ = newQ.or(base.q);
             }
-            return new BigInteger(sb.toString(), 2);
+            return new Materialized(newP, newQ, depth);
+        }
+
+        @Override
+        public BigInteger p()
+        {
+            return materialize().p;
         }
 
         @Override
         public BigInteger q()
         {
-            StringBuilder sb = new StringBuilder();
-            CompactNode cur = this;
-            while (cur != null) {
-                sb.append(cur.q ? '1' : '0');
-                cur = cur.parent;
-            }
-            return new BigInteger(sb.toString(), 2);
+            return materialize().q;
         }
 
         @Override
         public BigInteger s()
         {
-            return p().multiply(q());
+            return materialize().s();
         }
 
         @Override
@@ -378,30 +719,239 @@ public class CompactSolver implements Runnable
         @Override
         public int depth()
         {
-            int depth = 0;
-            CompactNode cur = parent;
-            while (cur != null) {
-                ++depth;
-                cur = cur.parent;
+            int steps = 0;
+            Materialized base = null;
+            for (CompactNode cur = this; null != cur && null == (base = cur.cached); cur = cur.parent) ++steps;
+            return null != base ? base.depth + steps : steps - 1;
+        }
+    }
+
+    /**
+     * The factors of a {@link CompactNode}, as rebuilt from its parent chain.
+     */
+    static final class Materialized
+    {
+        final BigInteger p, q;
+        final int        depth;
+        BigInteger       s; ///< computed on first use
+
+        Materialized(BigInteger p, BigInteger q, int depth)
+        {
+            this.p = p;
+            this.q = q;
+            this.depth = depth;
+        }
+
+        BigInteger s()
+        {
+            BigInteger s = this.s;
+            if (null == s) this.s = s = p.multiply(q);
+            return s;
+        }
+
+        /**
+         * @return approximate heap use of this entry, counting p, q and s
+         */
+        long bytes()
+        {
+            return 48 + 2 * bigIntegerBytes(depth + 1) + bigIntegerBytes(2 * depth + 2);
+        }
+
+        private static long bigIntegerBytes(int bits)
+        {
+            return 56 + 4L * ((bits + 31) >>> 5);
+        }
+    }
+
+    /**
+     * Budgeted cache of materialized {@link CompactNode}s. A node is cached when it is
+     * expanded, since its children rebuild their factors from it next. Once over budget,
+     * the least recently expanded nodes go first: the frontier's best nodes are the
+     * children of recent expansions, while old entries mostly back subtrees the search
+     * has already moved past, whatever their h.
+     */
+    private final class MaterializationCache
+    {
+        private final Lock                    lock   = new ReentrantLock();
+        private final ArrayDeque<CompactNode> oldest = new ArrayDeque<>(); ///< cached nodes in expansion order
+        private       long                    budget;
+        private       long                    bytes;
+
+        MaterializationCache(long budget)
+        {
+            this.budget = budget;
+        }
+
+        void add(CompactNode n)
+        {
+            if (budget <= 0 || null != n.cached) return;
+
+            Materialized m = n.materialize();
+            n.cached = m;
+
+            lock.lock();
+            try
+            {
+                oldest.add(n);
+                bytes += m.bytes();
+                while (bytes > budget && !oldest.isEmpty())
+                {
+                    CompactNode evicted = oldest.poll();
+                    bytes -= evicted.cached.bytes();
+                    evicted.cached = null;
+                }
+            }
+            finally { lock.unlock(); }
+        }
+
+        void budget(long budget)
+        {
+            lock.lock();
+            try { this.budget = budget; }
+            finally { lock.unlock(); }
+        }
+
+        long bytes()
+        {
+            lock.lock();
+            try { return bytes; }
+            finally { lock.unlock(); }
+        }
+
+        void clear()
+        {
+            lock.lock();
+            try
+            {
+                for (CompactNode n : oldest) n.cached = null;
+                oldest.clear();
+                bytes = 0;
             }
+            finally { lock.unlock(); }
+        }
+    }
+
+    /**
+     * Binary node format for frontiers that keep nodes off the heap, laid out as
+     * described in {@link NodeCodec}. PerformanceNodes are rebuilt directly; any
+     * other node class is rebuilt bit by bit from the root.
+     */
+    private final class NodeFormat implements NodeCodec<Node>
+    {
+        private final int maxBytes = NodeCodec.recordBytes(Math.max(0, maxDepth));
+
+        @Override
+        public int maxBytes()
+        {
+            return maxBytes;
+        }
+
+        @Override
+        public int bytes(Node n)
+        {
+            return NodeCodec.recordBytes(n.depth());
+        }
+
+        @Override
+        public void write(Node n, ByteBuffer to)
+        {
+            int depth = n.depth();
+            int len = NodeCodec.factorBytes(depth);
+            to.putDouble(n.h()).putInt(depth);
+            NodeCodec.putFactor(to, n.p(), len);
+            NodeCodec.putFactor(to, n.q(), len);
+        }
+
+        @Override
+        public Node read(ByteBuffer from)
+        {
+            double h = from.getDouble();
+            int depth = from.getInt();
+            int len = NodeCodec.factorBytes(depth);
+            BigInteger p = NodeCodec.getFactor(from, len);
+            BigInteger q = NodeCodec.getFactor(from, len);
+            if (PerformanceNode.class == nodeClass) return new PerformanceNode(depth, p, q, h);
+
+            Node n = newNode(null, p.testBit(0) ? 1 : 0, q.testBit(0) ? 1 : 0);
+            for (int i = 1; i <= depth; ++i) n = newNode(n, p.testBit(i) ? 1 : 0, q.testBit(i) ? 1 : 0);
+            return n;
+        }
+    }
+
+    /**
+     * A node rebuilt from the arena, w/its factors and product.
+     */
+    public class ArenaNode extends Node
+    {
+        final BigInteger p, q, s;
+        final int depth;
+
+        ArenaNode(int depth, BigInteger p, BigInteger q, BigInteger s)
+        {
+            super(null, 0, 0);
+
+            this.depth = depth;
+            this.p = p;
+            this.q = q;
+            this.s = s;
+        }
+
+        @Override
+        public BigInteger p()
+        {
+            return p;
+        }
+
+        @Override
+        public BigInteger q()
+        {
+            return q;
+        }
+
+        @Override
+        public BigInteger s()
+        {
+            return s;
+        }
+
+        @Override
+        public double h()
+        {
+            double h = 0;
+            for (Heuristic heuristic : heuristics) h += heuristic.h(this);
+            return h;
+        }
+
+        @Override
+        public int depth()
+        {
             return depth;
         }
     }
 
+    /**
+     * A named {@link HeuristicFunction} evaluated against this solver's target,
+     * e.g. one of the built-in {@link com.snd.semiprime.Heuristic}s.
+     */
     public class Heuristic
     {
-        final String                                  name;
-        final BiFunction<CompactSolver, Node, Double> h;
+        final String            name;
+        final HeuristicFunction h;
 
-        public Heuristic(String name, BiFunction<CompactSolver, Node, Double> h)
+        public Heuristic(String name, HeuristicFunction h)
         {
             this.name = name;
             this.h = h;
         }
 
+        public Heuristic(com.snd.semiprime.Heuristic h)
+        {
+            this(h.toString(), h);
+        }
+
         public double h(Node n)
         {
-            return h.apply(CompactSolver.this, n);
+            return h.h(target, n);
         }
     }
 }
@@ -0,0 +1,167 @@
+package com.snd.semiprime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Iterative deepening on an h threshold (IDA* w/o a path cost, since Solver is
+ * greedy on h). Each iteration runs an h-ordered depth-first search that skips
+ * every node above the threshold, then raises the threshold to the smallest h
+ * that was skipped, or by at least step.
+ *
+ * The top of the tree is split once into a few subtrees per worker; workers
+ * take whole subtrees from a shared queue and meet at a phaser between
+ * iterations. A worker that stops early deregisters, so it never stalls the
+ * rest. Nothing but the split and one stack per worker is stored, so memory
+ * grows w/the depth of the tree instead of w/the frontier.
+ *
+ * @param <T> node type
+ */
+public class DepthFirstSearch<T>
+{
+  public static final int DEFAULT_SUBTREES_PER_THREAD = 16;
+
+  private final ToDoubleFunction<? super T> h;
+  private final Predicate<T>                goal;
+  private final BooleanSupplier             done;
+  private final double                      step;
+  private final int                         subtrees;
+  private final Phaser                      phaser;
+
+  private final List<T>                   split   = new ArrayList<>(); ///< subtree roots, best first
+  private final ConcurrentLinkedQueue<T>  pending = new ConcurrentLinkedQueue<>(); ///< subtrees left in this iteration
+  private final DoubleAccumulator         skipped = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY); ///< lowest h above the threshold
+
+  private volatile double  threshold  = Double.POSITIVE_INFINITY;
+  private volatile int     iterations = 0;
+  private volatile boolean finished   = false;
+
+  /**
+   * @param threads number of workers that will call {@link #work}
+   * @param step least amount the threshold grows per iteration
+   * @param h priority of a node
+   * @param goal goal test, which also records the goal
+   * @param done true once the search should stop, e.g. a goal was found elsewhere
+   */
+  public DepthFirstSearch(int threads, double step, ToDoubleFunction<? super T> h, Predicate<T> goal, BooleanSupplier done)
+  {
+    if (threads < 1) throw new IllegalArgumentException("invalid thread count: " + threads);
+    if (!(step > 0)) throw new IllegalArgumentException("invalid threshold step: " + step);
+
+    this.h = h;
+    this.goal = goal;
+    this.done = done;
+    this.step = step;
+    this.subtrees = threads * DEFAULT_SUBTREES_PER_THREAD;
+    this.phaser = new Phaser(threads)
+    {
+      @Override protected boolean onAdvance(int phase, int registered) { return !advance() || 0 == registered; }
+    };
+  }
+
+  /**
+   * Splits the tree under root breadth-first until there are enough subtrees to
+   * go around, then sets the first threshold. Must be called before any worker starts.
+   * @param root root of the search
+   * @param expand appends the valid children of a node to a list
+   * @return false if the goal was found while splitting
+   */
+  public boolean seed(T root, BiConsumer<T, List<T>> expand)
+  {
+    if (goal.test(root)) return false;
+
+    List<T> level = new ArrayList<>();
+    level.add(root);
+    while (!level.isEmpty() && level.size() < subtrees && !done.getAsBoolean())
+    {
+      final List<T> next = new ArrayList<>(level.size() << 2);
+      for (T n : level) expand.accept(n, next);
+      for (T n : next) if (goal.test(n)) return false;
+      level = next;
+    }
+
+    level.sort(Comparator.comparingDouble(h));
+    split.addAll(level);
+    pending.addAll(split);
+    threshold = split.isEmpty() ? Double.POSITIVE_INFINITY : h.applyAsDouble(split.get(0)) + step;
+    iterations = 1;
+    finished = split.isEmpty();
+    return true;
+  }
+
+  /**
+   * Searches subtrees until the goal is found or no threshold is left to try.
+   * Every one of the workers passed to the constructor must call this.
+   * @param expand appends the valid children of a node to a list
+   * @param hold parks the calling thread for as long as the search is paused
+   * @throws InterruptedException if interrupted while paused
+   */
+  public void work(BiConsumer<T, List<T>> expand, Runnable hold) throws InterruptedException
+  {
+    final ArrayDeque<T> stack = new ArrayDeque<>();
+    final List<T> children = new ArrayList<>(4);
+    final Comparator<T> worstFirst = Comparator.<T>comparingDouble(h).reversed();
+
+    try
+    {
+      while (!finished)
+      {
+        T root;
+        while (!finished && !done.getAsBoolean() && null != (root = pending.poll()))
+        {
+          stack.push(root);
+          while (!stack.isEmpty() && !finished && !done.getAsBoolean())
+          {
+            final T n = stack.pop();
+            final double v = h.applyAsDouble(n);
+            if (v > threshold) { skipped.accumulate(v); continue; }
+
+            expand.accept(n, children);
+            for (T c : children) if (goal.test(c)) { finished = true; break; }
+
+            // push the best child last so it is searched first
+            children.sort(worstFirst);
+            for (T c : children) stack.push(c);
+            children.clear();
+
+            hold.run();
+            if (Thread.interrupted()) throw new InterruptedException();
+          }
+          stack.clear();
+        }
+
+        if (phaser.arriveAndAwaitAdvance() < 0) return;
+      }
+    }
+    finally { phaser.arriveAndDeregister(); }
+  }
+
+  /**
+   * Runs once between iterations, after every worker arrived: raise the threshold.
+   * @return false if the search is over
+   */
+  private boolean advance()
+  {
+    final double next = skipped.getThenReset();
+    if (finished || done.getAsBoolean() || Double.POSITIVE_INFINITY == next) { finished = true; return false; }
+
+    threshold = Math.max(next, threshold + step);
+    ++iterations;
+    pending.clear();
+    pending.addAll(split);
+    return true;
+  }
+
+  public double threshold() { return threshold; }
+  public int iterations() { return iterations; }
+  public boolean finished() { return finished; }
+}
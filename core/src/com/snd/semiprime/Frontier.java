@@ -0,0 +1,165 @@
+package com.snd.semiprime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The open list of a best-first search. Implementations decide how strictly
+ * nodes are ordered; all of them must be safe for concurrent use by workers.
+ *
+ * @param <T> node type
+ */
+public interface Frontier<T>
+{
+  enum Type
+  {
+    HEAP("Heap", "Single lock-protected binary heap; strict best-first order."),
+    BUCKETED("Bucketed", "h quantized into FIFO buckets w/an atomic min-bucket cursor; near O(1) push/pop."),
+    STEALING("Work Stealing", "One local heap per worker; idle workers steal the best half of a random victim's heap."),
+    MULTIQUEUE("MultiQueue", "Relaxed order: c*threads heaps, insert into a random heap, pop the better of two random heaps."),
+    OFF_HEAP("Off-Heap", "Single lock-protected index heap over fixed-size node records in direct memory; no GC pressure."),
+    ;
+
+    private final String name, desc;
+    Type(String name, String desc) { this.name = name; this.desc = desc; }
+
+    @Override public String toString() { return name; }
+    public String description() { return desc; }
+
+    /**
+     * @param threads number of workers that will share the frontier
+     * @param buckets h resolution, only used by {@link #BUCKETED}
+     * @param h priority of a node, only used by {@link #BUCKETED} and {@link #OFF_HEAP}
+     * @param <T> node type
+     * @return a new, empty frontier of this type
+     */
+    public <T extends Comparable<? super T>> Frontier<T> create(int threads, int buckets, ToDoubleFunction<? super T> h)
+    {
+      return this.<T>create(threads, buckets, h, null);
+    }
+
+    /**
+     * @param threads number of workers that will share the frontier
+     * @param buckets h resolution, only used by {@link #BUCKETED}
+     * @param h priority of a node, only used by {@link #BUCKETED} and {@link #OFF_HEAP}
+     * @param codec node encoding, required by {@link #OFF_HEAP}
+     * @param <T> node type
+     * @return a new, empty frontier of this type
+     */
+    public <T extends Comparable<? super T>> Frontier<T> create(int threads, int buckets, ToDoubleFunction<? super T> h, NodeCodec<T> codec)
+    {
+      switch (this)
+      {
+        case OFF_HEAP: return new OffHeapFrontier<>(codec, h);
+        case BUCKETED: return new BucketFrontier<>(buckets, h);
+        case STEALING: return new StealingFrontier<>(Math.max(1, threads));
+        case MULTIQUEUE: return new MultiQueueFrontier<>(Math.max(1, threads));
+        default: return new HeapFrontier<>();
+      }
+    }
+  }
+
+  /**
+   * @param t node to add
+   * @return true if the node was accepted
+   */
+  boolean offer(T t);
+
+  /**
+   * @return the best available node, or null if none is available right now
+   */
+  T poll();
+
+  /**
+   * Adds every node in ts, in as few critical sections as the implementation allows.
+   * @param ts nodes to add
+   * @return true if all nodes were accepted
+   */
+  default boolean offerAll(Collection<? extends T> ts)
+  {
+    boolean accepted = true;
+    for (T t : ts) accepted &= offer(t);
+    return accepted;
+  }
+
+  /**
+   * Removes up to max of the best available nodes, in as few critical sections
+   * as the implementation allows.
+   * @param to receives the nodes, best first where the implementation is ordered
+   * @param max most nodes to remove
+   * @return number of nodes added to to
+   */
+  default int drainTo(Collection<? super T> to, int max)
+  {
+    int n = 0; T t;
+    while (n < max && null != (t = poll())) { to.add(t); ++n; }
+    return n;
+  }
+
+  /**
+   * Removes up to max of the worst nodes, e.g. to move them out of memory, while
+   * the best stay available to workers. The default drains the whole frontier
+   * and offers the best back, so implementations should override it.
+   * @param to receives the nodes, in no particular order
+   * @param max most nodes to remove
+   * @return number of nodes added to to
+   */
+  default int drainWorst(Collection<? super T> to, int max)
+  {
+    final List<T> all = new ArrayList<>(size());
+    while (0 != drainTo(all, Integer.MAX_VALUE)) ;
+    final int keep = Math.max(0, all.size() - Math.max(0, max));
+    offerAll(all.subList(0, keep));
+    to.addAll(all.subList(keep, all.size()));
+    return all.size() - keep;
+  }
+
+  /**
+   * Copies every node without removing any, e.g. for a checkpoint. Callers keep
+   * offers and polls out while it runs if they need a consistent copy. The
+   * default drains the whole frontier and offers it back, so implementations
+   * should override it.
+   * @param to receives the nodes, in no particular order
+   * @return number of nodes added to to
+   */
+  default int snapshot(Collection<? super T> to)
+  {
+    final List<T> all = new ArrayList<>(size());
+    while (0 != drainTo(all, Integer.MAX_VALUE)) ;
+    offerAll(all);
+    to.addAll(all);
+    return all.size();
+  }
+
+  int size();
+  void clear();
+
+  /**
+   * Ties the calling thread to a worker slot, for implementations that keep
+   * per-worker state. Workers call this once before their first offer or poll;
+   * the default ignores it.
+   * @param worker 0-based worker index
+   */
+  default void bind(int worker) {}
+
+  default boolean isEmpty() { return 0 == size(); }
+
+  /**
+   * Waits up to the timeout for a node. The default parks once and retries;
+   * implementations that can be signalled on offer should override this.
+   * @return the best available node, or null if none arrived in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  default T poll(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    final T t = poll();
+    if (null != t) return t;
+    LockSupport.parkNanos(unit.toNanos(timeout));
+    if (Thread.interrupted()) throw new InterruptedException();
+    return poll();
+  }
+}
@@ -0,0 +1,128 @@
+package com.snd.semiprime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Strictly ordered frontier: a single binary heap behind one lock. Batched
+ * operations take the lock once for the whole batch.
+ *
+ * @param <T> node type
+ */
+public class HeapFrontier<T extends Comparable<? super T>> implements Frontier<T>
+{
+  private final ReentrantLock    lock     = new ReentrantLock();
+  private final Condition        notEmpty = lock.newCondition();
+  private final PriorityQueue<T> heap     = new PriorityQueue<>(); ///< unbounded heap for fast pop() behavior w/o sorting
+
+  @Override public boolean offer(T t)
+  {
+    lock.lock();
+    try { heap.offer(t); notEmpty.signal(); return true; }
+    finally { lock.unlock(); }
+  }
+
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    if (ts.isEmpty()) return true;
+    lock.lock();
+    try
+    {
+      for (T t : ts) heap.offer(t);
+      if (ts.size() > 1) notEmpty.signalAll(); else notEmpty.signal();
+      return true;
+    }
+    finally { lock.unlock(); }
+  }
+
+  @Override public T poll()
+  {
+    lock.lock();
+    try { return heap.poll(); }
+    finally { lock.unlock(); }
+  }
+
+  @Override public T poll(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try
+    {
+      while (heap.isEmpty())
+      {
+        if (nanos <= 0) return null;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return heap.poll();
+    }
+    finally { lock.unlock(); }
+  }
+
+  @Override public int drainTo(Collection<? super T> to, int max)
+  {
+    lock.lock();
+    try
+    {
+      int n = 0; T t;
+      while (n < max && null != (t = heap.poll())) { to.add(t); ++n; }
+      return n;
+    }
+    finally { lock.unlock(); }
+  }
+
+  @Override public int drainWorst(Collection<? super T> to, int max)
+  {
+    lock.lock();
+    try { return drainWorst(heap, to, max); }
+    finally { lock.unlock(); }
+  }
+
+  /**
+   * Sorts the heap once and rebuilds it from its best nodes; offers in sorted
+   * order never sift, so the rebuild is linear. Caller must hold the heap's lock.
+   * @param heap heap to take from
+   * @param to receives the nodes
+   * @param max most nodes to remove
+   * @return number of nodes added to to
+   */
+  static <T extends Comparable<? super T>> int drainWorst(PriorityQueue<T> heap, Collection<? super T> to, int max)
+  {
+    final int n = Math.min(Math.max(0, max), heap.size());
+    if (0 == n) return 0;
+
+    final List<T> all = new ArrayList<>(heap);
+    Collections.sort(all);
+    final int keep = all.size() - n;
+    heap.clear();
+    heap.addAll(all.subList(0, keep));
+    to.addAll(all.subList(keep, all.size()));
+    return n;
+  }
+
+  @Override public int snapshot(Collection<? super T> to)
+  {
+    lock.lock();
+    try { to.addAll(heap); return heap.size(); }
+    finally { lock.unlock(); }
+  }
+
+  @Override public int size()
+  {
+    lock.lock();
+    try { return heap.size(); }
+    finally { lock.unlock(); }
+  }
+
+  @Override public void clear()
+  {
+    lock.lock();
+    try { heap.clear(); }
+    finally { lock.unlock(); }
+  }
+}
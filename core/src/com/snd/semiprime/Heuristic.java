@@ -1,51 +1,54 @@
 package com.snd.semiprime;
 
-import java.util.function.BiFunction;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
 
 /**
   * @author Stephen Dunn
   * @since March 20, 2016
   */
-public enum Heuristic
+public enum Heuristic implements HeuristicFunction
 {
   // template for an empty heuristic; commented to prevent adding to gui; you may safely uncomment for use from a commandline app
-  //NONE("None", "Brute-force Search", (s,n) -> 0.0),
+  //NONE("None", "Brute-force Search", (t,n) -> 0.0),
 
-  NONE("None", "", (s,n) -> 0.0),
+  NONE("None", "", (t,n) -> 0.0),
 
-  RANDOM("Random", "", (s,n) -> Math.random()),
+  RANDOM("Random", "", (t,n) -> Math.random()),
 
   DIST_EXPECTED_SEPARATE("Expected Distribution (separate)",
       "Calculate distribution difference from target.\nabs( sum(factor[i].bitCount() / factor[i].bitLength()) - (targetBitCount / targetBitLen) )",
-      (s,n) -> Math.abs((((double) n.p.bitCount() / (double) n.p.bitLength()) + ((double) n.q.bitCount() / (double) n.q.bitLength())) - s.cacheSSetBitsOverLen2)),
+      (t,n) -> distExpectedSeparate(t, ratio(n.pBitCount(), n.pBitLength()), ratio(n.qBitCount(), n.qBitLength()))),
 
   DIST_EXPECTED_SUMMED("Expected Distribution (summed)",
       "Calculate h based upon the likelihood that the current factor bit distribution reflects\nexpectations based upon objective experimental results w/semiprime numbers.",
-      (s,n) -> Math.abs(((double) (n.p.bitCount() + n.q.bitCount())/((double) (n.p.bitLength() + n.q.bitLength()))) - s.cacheSSetBitsOverLen2)),
+      (t,n) -> distExpectedSummed(t, n.pBitCount(), n.qBitCount(), n.pBitLength(), n.qBitLength())),
 
   DIST_DIFF_BY_DEPTH_SEPARATE("Distribution Difference by Depth (separate)",
       "Calculate distribution difference from target.\nabs( [ ((p.bitCount/(1+depth))+(q.bitCount/(1+depth)) ] - (targetBitCount/targetBitLen) )",
-      (s,n) -> Math.abs( (((double) n.p.bitCount()/(1.0+n.depth())) + ((double) n.q.bitCount()/(1.0+n.depth()))) - s.cacheSSetBitsOverLen2)),
+      (t,n) -> distDiffByDepthSeparate(t, byDepth(n.pBitCount(), n.depth()), byDepth(n.qBitCount(), n.depth()))),
 
   DIST_DIFF_BY_DEPTH_SUMMED("Distribution Difference by Depth (summed)",
       "Calculate distribution difference from target.\nabs( [ sum(factor[i].bitCount) / (2*(depth+1)) ] - (targetBitCount / targetBitLen) )",
-      (s,n) -> Math.abs(((n.p.bitCount() + n.q.bitCount()) / (2.0 * (1.0+n.depth()))) - s.cacheSSetBitsOverLen2)),
+      (t,n) -> distDiffByDepthSummed(t, n.depth(), n.pBitCount(), n.qBitCount())),
 
   DIST_EXPECTED_GAUSSIAN("Expected Distribution 50% (separate)",
       "Calculate h based upon the likelihood that the current factor bit distribution reflects\nexpectations based upon a standard Gaussian distribution.",
-      (s,n) -> Math.abs((((double) n.p.bitCount()/(double) n.p.bitLength()) + (double) n.q.bitCount()/(double) n.q.bitLength()) - 0.5)),
+      (t,n) -> distExpectedGaussian(ratio(n.pBitCount(), n.pBitLength()), ratio(n.qBitCount(), n.qBitLength()))),
 
   HAMMING("Hamming Distance",
       "<a href=\"https://en.wikipedia.org/wiki/Hamming_distance\">Hamming distance</a> to goal.\nfor each bit i in target:\n\tsum( n.s[i] != target[i] )",
-      (s,n) -> (double) s.cacheS.xor(n.s).bitCount() / (double) s.cacheSLen2),
+      (t,n) -> hamming(t, n.hamming())),
 
   // template for all heuristics option; commented to prevent adding to gui; you may safely uncomment for use from a commandline app
-  //ALL("All", "Combines all available heuristics", (s,n) -> Arrays.stream( Heuristic.values() ).mapToDouble(h -> h.function.apply(s,n)).sum() / (double) Heuristic.values().length),
+  //ALL("All", "Combines all available heuristics", (t,n) -> Arrays.stream( Heuristic.values() ).mapToDouble(h -> h.h(t,n)).sum() / (double) Heuristic.values().length),
   ;
 
   private final String name, desc;
-  private final BiFunction<Solver, Solver.Node, Double> function;
-  Heuristic(String name, String desc, BiFunction<Solver, Solver.Node, Double> function)
+  private final HeuristicFunction function;
+  Heuristic(String name, String desc, HeuristicFunction function)
   {
     this.name = name;
     this.desc = "<html>" + desc.replace("\n","<br>").replace("\t", "&nbsp;&nbsp;&nbsp;&nbsp;") + "</html>";
@@ -54,7 +57,157 @@ public enum Heuristic
 
   @Override public String toString() { return name; }
   public String description() { return desc; }
-  public double apply(Solver s, Solver.Node n) { return function.apply(s,n); }
+  @Override public double h(Target t, NodeView n) { return function.h(t,n); }
+
+  // the built-in formulas, shared by the entries above and by fuse(); the per-factor terms are split out so siblings can share them
+  static double ratio(int count, int length) { return (double) count / (double) length; }
+  static double byDepth(int count, int depth) { return (double) count / (1.0+depth); }
+  static double distExpectedSeparate(Target t, double pRatio, double qRatio) { return Math.abs((pRatio + qRatio) - t.setBitsOverLength); }
+  static double distExpectedSummed(Target t, int pCount, int qCount, int pLength, int qLength) { return Math.abs(((double) (pCount + qCount)/((double) (pLength + qLength))) - t.setBitsOverLength); }
+  static double distDiffByDepthSeparate(Target t, double pByDepth, double qByDepth) { return Math.abs((pByDepth + qByDepth) - t.setBitsOverLength); }
+  static double distDiffByDepthSummed(Target t, int depth, int pCount, int qCount) { return Math.abs(((pCount + qCount) / (2.0 * (1.0+depth))) - t.setBitsOverLength); }
+  static double distExpectedGaussian(double pRatio, double qRatio) { return Math.abs((pRatio + qRatio) - 0.5); }
+  static double hamming(Target t, int hamming) { return (double) hamming / (double) t.bitLength; }
+
+  /**
+   * Builds the averaging evaluator a search runs on every node, once per search.
+   * A lone custom function is returned as is; otherwise the node's features are
+   * read once and handed to a MethodHandle chain built for exactly the selected
+   * entries, so a node costs one monomorphic call however many heuristics are
+   * selected and the JIT compiles the chain into a single specialized method.
+   * @param heuristics heuristics to average; other HeuristicFunctions are called as usual
+   * @return the mean of heuristics, or 0 if there are none
+   */
+  public static HeuristicFunction fuse(HeuristicFunction... heuristics)
+  {
+    if (0 == heuristics.length) return NONE;
+    if (1 == heuristics.length && !(heuristics[0] instanceof Heuristic)) return heuristics[0];
+    return new Fused(heuristics);
+  }
+
+  private static final class Fused implements HeuristicFunction
+  {
+    /// what every term of the chain takes: t, n, depth, pCount, qCount, pLength, qLength, pRatio, qRatio, pByDepth, qByDepth
+    private static final MethodType FEATURES = MethodType.methodType(double.class, Target.class, NodeView.class,
+        int.class, int.class, int.class, int.class, int.class, double.class, double.class, double.class, double.class);
+
+    private final MethodHandle evaluator; ///< mean of the selected terms, of type FEATURES
+    private final boolean      ratios; ///< true if any entry needs bitCount / bitLength per factor
+    private final boolean      byDepth; ///< true if any entry needs bitCount / (1+depth) per factor
+
+    Fused(HeuristicFunction[] functions)
+    {
+      boolean ratios = false, byDepth = false;
+      try
+      {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle add = lookup.findStatic(Fused.class, "add", MethodType.methodType(double.class, double.class, double.class));
+        final MethodHandle mean = lookup.findStatic(Fused.class, "mean", MethodType.methodType(double.class, double.class, double.class));
+        final int[] twice = new int[FEATURES.parameterCount() << 1];
+        for (int i = 0; i < twice.length; ++i) twice[i] = i % FEATURES.parameterCount();
+
+        // sum the terms in selection order, as the loop over the entries does, so h comes out bit for bit the same
+        MethodHandle sum = MethodHandles.dropArguments(MethodHandles.constant(double.class, 0.0), 0, FEATURES.parameterList());
+        for (HeuristicFunction function : functions)
+        {
+          if (NONE == function) continue;
+          ratios |= DIST_EXPECTED_SEPARATE == function || DIST_EXPECTED_GAUSSIAN == function;
+          byDepth |= DIST_DIFF_BY_DEPTH_SEPARATE == function;
+          sum = MethodHandles.permuteArguments(MethodHandles.collectArguments(MethodHandles.collectArguments(add, 1, term(lookup, function)), 0, sum), FEATURES, twice);
+        }
+        this.evaluator = MethodHandles.filterReturnValue(sum, MethodHandles.insertArguments(mean, 1, (double) functions.length));
+      }
+      catch (ReflectiveOperationException e) { throw new IllegalStateException("heuristic formulas not found", e); }
+      this.ratios = ratios;
+      this.byDepth = byDepth;
+    }
+
+    /**
+     * @return function as a handle of type FEATURES: a built-in entry calls its formula
+     * directly on the features it needs, anything else is called through its interface
+     */
+    private static MethodHandle term(MethodHandles.Lookup lookup, HeuristicFunction function) throws ReflectiveOperationException
+    {
+      final Class<?> T = Target.class, D = double.class, I = int.class;
+      if (function instanceof Heuristic) switch ((Heuristic) function)
+      {
+        case DIST_EXPECTED_SEPARATE: return formula(lookup, "distExpectedSeparate", new Class<?>[] { T, D, D }, 0, 7, 8);
+        case DIST_EXPECTED_SUMMED: return formula(lookup, "distExpectedSummed", new Class<?>[] { T, I, I, I, I }, 0, 3, 4, 5, 6);
+        case DIST_DIFF_BY_DEPTH_SEPARATE: return formula(lookup, "distDiffByDepthSeparate", new Class<?>[] { T, D, D }, 0, 9, 10);
+        case DIST_DIFF_BY_DEPTH_SUMMED: return formula(lookup, "distDiffByDepthSummed", new Class<?>[] { T, I, I, I }, 0, 2, 3, 4);
+        case DIST_EXPECTED_GAUSSIAN: return formula(lookup, "distExpectedGaussian", new Class<?>[] { D, D }, 7, 8);
+        case HAMMING:
+          final MethodHandle hamming = MethodHandles.filterArguments(lookup.findStatic(Heuristic.class, "hamming", MethodType.methodType(D, T, I)),
+              1, lookup.findVirtual(NodeView.class, "hamming", MethodType.methodType(I)));
+          return MethodHandles.permuteArguments(hamming, FEATURES, 0, 1);
+        default: break;
+      }
+      final MethodHandle h = lookup.findVirtual(HeuristicFunction.class, "h", MethodType.methodType(D, T, NodeView.class)).bindTo(function);
+      return MethodHandles.permuteArguments(h, FEATURES, 0, 1);
+    }
+
+    /// @return the static formula called name, taking the FEATURES arguments at features
+    private static MethodHandle formula(MethodHandles.Lookup lookup, String name, Class<?>[] parameters, int... features) throws ReflectiveOperationException
+    {
+      return MethodHandles.permuteArguments(lookup.findStatic(Heuristic.class, name, MethodType.methodType(double.class, parameters)), FEATURES, features);
+    }
+
+    private static double add(double sum, double h) { return sum + h; }
+    private static double mean(double sum, double count) { return sum / count; }
+
+    @Override public double h(Target t, NodeView n)
+    {
+      final int depth = n.depth(), pCount = n.pBitCount(), qCount = n.qBitCount(), pLength = n.pBitLength(), qLength = n.qBitLength();
+      return h(t, n, depth, pCount, qCount, pLength, qLength,
+          ratios ? ratio(pCount, pLength) : 0, ratios ? ratio(qCount, qLength) : 0,
+          byDepth ? byDepth(pCount, depth) : 0, byDepth ? byDepth(qCount, depth) : 0);
+    }
+
+    /**
+     * Each child's factors are its parent's, one of them maybe w/the bit at the
+     * new depth set, so the per-factor terms take only four values per family.
+     * They are worked out once from the parent; each child just picks its two.
+     * A child that doesn't fit, i.e. isn't a one-bit child of parent, is scored
+     * on its own.
+     */
+    @Override public void siblings(Target t, NodeView parent, List<? extends NodeView> children, double[] to)
+    {
+      final int depth = parent.depth() + 1;
+      final int pCount = parent.pBitCount(), qCount = parent.qBitCount(), pLength = parent.pBitLength(), qLength = parent.qBitLength();
+
+      // indexed by factor(): parent's p, p + bit, parent's q, q + bit
+      final double[] ratio = new double[4], byDepth = new double[4];
+      if (ratios) { ratio[0] = ratio(pCount, pLength); ratio[1] = ratio(pCount+1, depth+1); ratio[2] = ratio(qCount, qLength); ratio[3] = ratio(qCount+1, depth+1); }
+      if (this.byDepth) { byDepth[0] = byDepth(pCount, depth); byDepth[1] = byDepth(pCount+1, depth); byDepth[2] = byDepth(qCount, depth); byDepth[3] = byDepth(qCount+1, depth); }
+
+      for (int i = 0; i < children.size(); ++i)
+      {
+        final NodeView c = children.get(i);
+        final int cpCount = c.pBitCount(), cqCount = c.qBitCount(), cpLength = c.pBitLength(), cqLength = c.qBitLength();
+        final int p = factor(depth, cpCount, cpLength, pCount, pLength, qCount, qLength);
+        final int q = factor(depth, cqCount, cqLength, pCount, pLength, qCount, qLength);
+        to[i] = p < 0 || q < 0 || c.depth() != depth ? h(t, c) : h(t, c, depth, cpCount, cqCount, cpLength, cqLength, ratio[p], ratio[q], byDepth[p], byDepth[q]);
+      }
+    }
+
+    /**
+     * @return which of the parent's factors a child's factor came from: 0 for p, 1 for p w/the new bit,
+     * 2 for q, 3 for q w/the new bit; -1 if it came from neither
+     */
+    private static int factor(int depth, int count, int length, int pCount, int pLength, int qCount, int qLength)
+    {
+      if (depth+1 == length) return pCount+1 == count ? 1 : qCount+1 == count ? 3 : -1;
+      return pCount == count && pLength == length ? 0 : qCount == count && qLength == length ? 2 : -1;
+    }
+
+    /// the one place the evaluator is invoked, for a node and its per-factor terms
+    private double h(Target t, NodeView n, int depth, int pCount, int qCount, int pLength, int qLength, double pRatio, double qRatio, double pByDepth, double qByDepth)
+    {
+      try { return (double) evaluator.invokeExact(t, n, depth, pCount, qCount, pLength, qLength, pRatio, qRatio, pByDepth, qByDepth); }
+      catch (RuntimeException | Error e) { throw e; }
+      catch (Throwable e) { throw new IllegalStateException(e); }
+    }
+  }
 
   public static Heuristic fromFormattedName(String name)
   {
@@ -0,0 +1,73 @@
+package com.snd.semiprime;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * A heuristic either engine can run: a primitive function of the target and an
+ * engine-neutral view of a node, so a heuristic is written once and nothing is
+ * boxed per call. The built-in {@link Heuristic}s are HeuristicFunctions;
+ * {@link CompactSolver.Heuristic} wraps any of them.
+ */
+@FunctionalInterface
+public interface HeuristicFunction
+{
+  /**
+   * @param target what the search is factoring
+   * @param n node to estimate
+   * @return an estimate of n's distance to goal, where 0 = goal
+   */
+  double h(Target target, NodeView n);
+
+  /**
+   * Scores the children of one expansion together. Siblings differ only in the
+   * bits at their depth, so an implementation may work out what they share once;
+   * by default each child is scored on its own.
+   * @param target what the search is factoring
+   * @param parent the node that was expanded
+   * @param children the children of parent to score
+   * @param to receives h of each child, in the same order
+   */
+  default void siblings(Target target, NodeView parent, List<? extends NodeView> children, double[] to)
+  {
+    for (int i = 0; i < children.size(); ++i) to[i] = h(target, children.get(i));
+  }
+
+  /**
+   * What a heuristic may know about the target, computed once per search.
+   */
+  final class Target
+  {
+    public final BigInteger semiprime;
+    public final int        bitLength;
+    public final int        bitCount;
+    public final double     setBitsOverLength; ///< bitCount / bitLength
+
+    public Target(BigInteger semiprime)
+    {
+      this.semiprime = semiprime;
+      this.bitLength = semiprime.bitLength();
+      this.bitCount = semiprime.bitCount();
+      this.setBitsOverLength = (double) bitCount / (double) bitLength;
+    }
+  }
+
+  /**
+   * What a heuristic may know about a node. The counts and lengths are kept by
+   * the nodes that can maintain them cheaply, e.g. derived from the parent's in
+   * O(1); the factors may have to be built, so prefer the counts in hot heuristics.
+   */
+  interface NodeView
+  {
+    int depth();
+    int pBitCount();
+    int qBitCount();
+    int pBitLength();
+    int qBitLength();
+    int hamming(); ///< bits of the partial product that differ from the target
+
+    BigInteger p();
+    BigInteger q();
+    BigInteger s();
+  }
+}
@@ -0,0 +1,130 @@
+package com.snd.semiprime;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-protected binary min-heap of int values keyed by float, e.g. {@link NodeArena}
+ * indices keyed by h. Two parallel primitive arrays, so an entry costs 8 bytes
+ * and the collector has nothing to trace.
+ */
+public class IntHeap
+{
+    private final ReentrantLock lock     = new ReentrantLock();
+    private final Condition     notEmpty = lock.newCondition();
+
+    // guarded by lock
+    private float[] keys   = new float[1024];
+    private int[]   values = new int[1024];
+    private int     size   = 0;
+
+    /**
+     * Adds the first n entries of keys/values in one critical section.
+     * @param keys priorities, lowest first out
+     * @param values values to add
+     * @param n entries to add
+     */
+    public void offerAll(float[] keys, int[] values, int n)
+    {
+        if (0 == n) return;
+
+        lock.lock();
+        try
+        {
+            for (int i = 0; i < n; ++i) push(keys[i], values[i]);
+            if (n > 1) notEmpty.signalAll(); else notEmpty.signal();
+        }
+        finally { lock.unlock(); }
+    }
+
+    public void offer(float key, int value)
+    {
+        offerAll(new float[] { key }, new int[] { value }, 1);
+    }
+
+    /**
+     * Removes up to max of the lowest-keyed values, waiting up to the timeout if the heap is empty.
+     * @param to receives the values, lowest key first
+     * @param max most values to remove
+     * @param timeout how long to wait for a value
+     * @param unit unit of timeout
+     * @return number of values written to to
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int drainTo(int[] to, int max, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try
+        {
+            while (0 == size)
+            {
+                if (nanos <= 0) return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            final int n = Math.min(max, size);
+            for (int i = 0; i < n; ++i) to[i] = pop();
+            return n;
+        }
+        finally { lock.unlock(); }
+    }
+
+    public int size()
+    {
+        lock.lock();
+        try { return size; }
+        finally { lock.unlock(); }
+    }
+
+    public void clear()
+    {
+        lock.lock();
+        try { size = 0; }
+        finally { lock.unlock(); }
+    }
+
+    /**
+     * @return bytes held by the heap arrays
+     */
+    public long bytes()
+    {
+        lock.lock();
+        try { return 4L * keys.length + 4L * values.length; }
+        finally { lock.unlock(); }
+    }
+
+    private void push(float key, int value)
+    {
+        if (size == keys.length) { keys = Arrays.copyOf(keys, size << 1); values = Arrays.copyOf(values, size << 1); }
+
+        int i = size++;
+        while (i > 0)
+        {
+            final int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            keys[i] = keys[parent]; values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key; values[i] = value;
+    }
+
+    private int pop()
+    {
+        final int top = values[0];
+        final float key = keys[--size];
+        final int value = values[size];
+
+        int i = 0;
+        for (int child; (child = (i << 1) + 1) < size; i = child)
+        {
+            if (child + 1 < size && keys[child + 1] < keys[child]) ++child;
+            if (key <= keys[child]) break;
+            keys[i] = keys[child]; values[i] = values[child];
+        }
+        keys[i] = key; values[i] = value;
+        return top;
+    }
+}
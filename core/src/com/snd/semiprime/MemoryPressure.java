@@ -0,0 +1,125 @@
+package com.snd.semiprime;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Watches old-gen occupancy against a cap, e.g. {@link Solver#memoryCap()}, and
+ * reports whether the heap is under pressure.
+ *
+ * Pressure starts once the old gen holds {@link #DEFAULT_HIGH} percent of the cap
+ * and ends once it falls under {@link #DEFAULT_LOW} percent, so a search hovering
+ * near the line does not flip back and forth. Rising is reported by the JVM as
+ * soon as a collection leaves the pool above its threshold; falling is polled,
+ * since the JVM has no notification for it. Occupancy is measured after
+ * collections, so garbage waiting in the old gen does not count.
+ */
+public class MemoryPressure implements AutoCloseable
+{
+  public static final int  DEFAULT_HIGH          = 75; ///< percent of the cap at which pressure starts
+  public static final int  DEFAULT_LOW           = 50; ///< percent of the cap under which pressure ends
+  public static final long DEFAULT_PERIOD_MILLIS = 1000L; ///< how often thresholds are refreshed and falling pressure is checked
+
+  private final IntSupplier             cap; ///< percent of the old gen allowed
+  private final List<MemoryPoolMXBean>  pools; ///< heap pools that support collection usage thresholds, i.e. the old gen
+  private final NotificationEmitter     emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+  private final NotificationListener    listener = this::notified;
+  private final Timer                   timer = new Timer("memory pressure", true);
+  private final AtomicLong              switches = new AtomicLong(0);
+  private volatile boolean              high = false;
+
+  /**
+   * Starts watching; {@link #close()} stops.
+   * @param cap percent of the old gen the caller may use, read again every period
+   */
+  public MemoryPressure(IntSupplier cap)
+  {
+    this.cap = cap;
+    this.pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> MemoryType.HEAP == pool.getType() && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported())
+        .collect(Collectors.toList());
+
+    emitter.addNotificationListener(listener, null, null);
+    poll();
+    timer.schedule(new TimerTask() { @Override public void run() { poll(); } }, DEFAULT_PERIOD_MILLIS, DEFAULT_PERIOD_MILLIS);
+  }
+
+  /**
+   * @return true while the old gen is above the high mark, and until it falls below the low one
+   */
+  public boolean high() { return high; }
+
+  /**
+   * @return times pressure started or ended
+   */
+  public long switches() { return switches.get(); }
+
+  /**
+   * @return percent of the cap the old gen held after the last collection
+   */
+  public int occupancy()
+  {
+    long used = 0, max = 0;
+    for (MemoryPoolMXBean pool : pools)
+    {
+      final MemoryUsage usage = pool.getCollectionUsage();
+      if (null == usage) continue;
+      used += usage.getUsed();
+      max += max(pool);
+    }
+    final long allowed = max * Math.max(1, cap.getAsInt()) / 100L;
+    return 0 != allowed ? (int) (used * 100L / allowed) : 0;
+  }
+
+  @Override public void close()
+  {
+    timer.cancel();
+    try { emitter.removeNotificationListener(listener); } catch (Throwable ignored) {}
+    for (MemoryPoolMXBean pool : pools) { try { pool.setCollectionUsageThreshold(0); } catch (Throwable ignored) {} }
+  }
+
+  /// refreshes the thresholds in case the cap changed, and ends pressure once occupancy falls
+  private void poll()
+  {
+    for (MemoryPoolMXBean pool : pools)
+    {
+      try { pool.setCollectionUsageThreshold(max(pool) * Math.max(1, cap.getAsInt()) / 100L * DEFAULT_HIGH / 100L); }
+      catch (Throwable ignored) {}
+    }
+
+    final int occupancy = occupancy();
+    if (occupancy >= DEFAULT_HIGH) high(true);
+    else if (occupancy < DEFAULT_LOW) high(false);
+  }
+
+  private void notified(Notification notification, Object handback)
+  {
+    if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) high(true);
+  }
+
+  private void high(boolean high)
+  {
+    if (this.high == high) return;
+    this.high = high;
+    switches.incrementAndGet();
+    Log.o("memory pressure " + (high ? "high" : "low") + ": old gen at " + occupancy() + "% of the cap");
+  }
+
+  private static long max(MemoryPoolMXBean pool)
+  {
+    final long max = pool.getUsage().getMax();
+    return max > 0 ? max : Runtime.getRuntime().maxMemory();
+  }
+}
@@ -0,0 +1,182 @@
+package com.snd.semiprime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relaxed priority queue made of c*threads independently locked heaps.
+ *
+ * offer() try-locks a random heap and moves on to another random heap if it is
+ * busy. poll() looks at the best node of two random heaps and pops from the
+ * better one, so a pop returns one of the best few nodes in the whole frontier
+ * rather than the best, but no single lock is shared by every worker.
+ *
+ * @param <T> node type
+ */
+public class MultiQueueFrontier<T extends Comparable<? super T>> implements Frontier<T>
+{
+  public static final int DEFAULT_QUEUES_PER_THREAD = 2;
+
+  private final List<Queue> queues;
+  private final LongAdder   size = new LongAdder();
+
+  public MultiQueueFrontier(int threads) { this(threads, DEFAULT_QUEUES_PER_THREAD); }
+
+  public MultiQueueFrontier(int threads, int queuesPerThread)
+  {
+    if (threads < 1) throw new IllegalArgumentException("invalid thread count: " + threads);
+    if (queuesPerThread < 1) throw new IllegalArgumentException("invalid queues per thread: " + queuesPerThread);
+
+    // at least 2 heaps so that two-choice deletion means something
+    final int n = Math.max(2, threads * queuesPerThread);
+    this.queues = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) queues.add(new Queue());
+  }
+
+  @Override public boolean offer(T t)
+  {
+    final Queue queue = lockRandom();
+    try { queue.heap.offer(t); queue.top = queue.heap.peek(); }
+    finally { queue.lock.unlock(); }
+    size.increment();
+    return true;
+  }
+
+  /**
+   * A whole batch goes into one random heap. Siblings then share a heap, which
+   * the two-choice poll tolerates the same way it tolerates any other skew.
+   */
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    if (ts.isEmpty()) return true;
+    final Queue queue = lockRandom();
+    try { for (T t : ts) queue.heap.offer(t); queue.top = queue.heap.peek(); }
+    finally { queue.lock.unlock(); }
+    size.add(ts.size());
+    return true;
+  }
+
+  @Override public T poll()
+  {
+    final List<T> to = new ArrayList<>(1);
+    return 0 != drainTo(to, 1) ? to.get(0) : null;
+  }
+
+  /**
+   * Takes up to max nodes from the better of two random heaps; the batch is only
+   * as well ordered as that heap.
+   */
+  @Override public int drainTo(Collection<? super T> to, int max)
+  {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    // two-choice deletion; a few tries keep us from scanning while most heaps are populated
+    for (int attempt = 0; attempt < queues.size(); ++attempt)
+    {
+      final Queue a = queues.get(random.nextInt(queues.size())), b = queues.get(random.nextInt(queues.size()));
+      final T aTop = a.top, bTop = b.top;
+      final Queue best = null == aTop ? b : null == bTop ? a : aTop.compareTo(bTop) <= 0 ? a : b;
+      if (null == best.top || !best.lock.tryLock()) continue;
+
+      final int n;
+      try { n = best.drainTo(to, max); }
+      finally { best.lock.unlock(); }
+      if (0 != n) { size.add(-n); return n; }
+    }
+
+    // the frontier is (nearly) empty; make sure nothing is stranded before giving up
+    for (Queue queue : queues)
+    {
+      if (null == queue.top) continue;
+      final int n;
+      queue.lock.lock();
+      try { n = queue.drainTo(to, max); }
+      finally { queue.lock.unlock(); }
+      if (0 != n) { size.add(-n); return n; }
+    }
+    return 0;
+  }
+
+  /// caller must unlock the returned queue
+  private Queue lockRandom()
+  {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    Queue queue;
+    while (!(queue = queues.get(random.nextInt(queues.size()))).lock.tryLock()) ;
+    return queue;
+  }
+
+  /**
+   * Takes the same share from every heap, one heap lock at a time, so the others
+   * keep working meanwhile.
+   */
+  @Override public int drainWorst(Collection<? super T> to, int max)
+  {
+    final long total = size.sum();
+    if (total <= 0 || max <= 0) return 0;
+
+    int n = 0;
+    for (Queue queue : queues)
+    {
+      queue.lock.lock();
+      try
+      {
+        n += HeapFrontier.drainWorst(queue.heap, to, (int) Math.min(max - n, (queue.heap.size() * (long) max + total - 1) / total));
+        queue.top = queue.heap.peek();
+      }
+      finally { queue.lock.unlock(); }
+      if (n >= max) break;
+    }
+    size.add(-n);
+    return n;
+  }
+
+  /**
+   * Copies one heap at a time under its own lock; nodes stay in their heaps.
+   */
+  @Override public int snapshot(Collection<? super T> to)
+  {
+    int n = 0;
+    for (Queue queue : queues)
+    {
+      queue.lock.lock();
+      try { to.addAll(queue.heap); n += queue.heap.size(); }
+      finally { queue.lock.unlock(); }
+    }
+    return n;
+  }
+
+  @Override public int size() { return (int) size.sum(); }
+
+  @Override public void clear()
+  {
+    for (Queue queue : queues)
+    {
+      queue.lock.lock();
+      try { queue.heap.clear(); queue.top = null; }
+      finally { queue.lock.unlock(); }
+    }
+    size.reset();
+  }
+
+  private class Queue
+  {
+    final ReentrantLock    lock = new ReentrantLock();
+    final PriorityQueue<T> heap = new PriorityQueue<>();
+    volatile T             top; ///< best node in heap, read w/o locking to pick between two heaps
+
+    /// caller must hold lock
+    int drainTo(Collection<? super T> to, int max)
+    {
+      int n = 0; T t;
+      while (n < max && null != (t = heap.poll())) { to.add(t); ++n; }
+      top = heap.peek();
+      return n;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.snd.semiprime;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Struct-of-arrays node store for {@link CompactSolver}. A node is an index;
+ * its parent, the p/q bits it adds, its h and its depth live in parallel
+ * primitive arrays, so a node costs 11 bytes and no object header.
+ *
+ * The arrays are split into fixed-size chunks that never move once allocated,
+ * so workers write the nodes they reserved w/o holding the lock; only
+ * reserving indices (and adding a chunk now and then) is locked. A node must
+ * reach other threads through something that synchronizes, e.g. the frontier.
+ */
+public class NodeArena
+{
+    public static final int CHUNK_BITS = 16;
+    public static final int CHUNK      = 1 << CHUNK_BITS;
+    public static final int NONE       = -1; ///< parent of the root
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // chunk tables; a chunk never moves once allocated, only the tables are copied to grow
+    private volatile int[][]   parents = new int[0][];
+    private volatile byte[][]  bits    = new byte[0][]; ///< pBit | qBit << 1
+    private volatile float[][] hs      = new float[0][];
+    private volatile short[][] depths  = new short[0][];
+    private volatile int       size    = 0;
+
+    /**
+     * Reserves n consecutive nodes.
+     * @param n nodes to reserve
+     * @return index of the first one
+     */
+    public int allocate(int n)
+    {
+        lock.lock();
+        try
+        {
+            final int first = size, end = first + n;
+            if (end < first) throw new IllegalStateException("node arena full");
+
+            final int chunks = (end + CHUNK - 1) >>> CHUNK_BITS;
+            if (chunks > parents.length) grow(Math.max(chunks, parents.length << 1));
+            for (int i = first >>> CHUNK_BITS; i < chunks; ++i) if (null == parents[i]) addChunk(i);
+
+            size = end;
+            return first;
+        }
+        finally { lock.unlock(); }
+    }
+
+    /// caller must hold lock
+    private void grow(int chunks)
+    {
+        bits = Arrays.copyOf(bits, chunks);
+        hs = Arrays.copyOf(hs, chunks);
+        depths = Arrays.copyOf(depths, chunks);
+        parents = Arrays.copyOf(parents, chunks);
+    }
+
+    /// caller must hold lock
+    private void addChunk(int i)
+    {
+        parents[i] = new int[CHUNK];
+        bits[i] = new byte[CHUNK];
+        hs[i] = new float[CHUNK];
+        depths[i] = new short[CHUNK];
+    }
+
+    /**
+     * Writes a reserved node.
+     * @param i an index reserved by {@link #allocate}
+     * @param parent index of the parent, or {@link #NONE}
+     * @param pBit bit added to p at this depth
+     * @param qBit bit added to q at this depth
+     * @param h heuristic value
+     * @param depth depth of the node
+     */
+    public void set(int i, int parent, int pBit, int qBit, float h, int depth)
+    {
+        final int c = i >>> CHUNK_BITS, o = i & (CHUNK - 1);
+        parents[c][o] = parent;
+        bits[c][o] = (byte) ((0 != pBit ? 1 : 0) | (0 != qBit ? 2 : 0));
+        hs[c][o] = h;
+        depths[c][o] = (short) depth;
+    }
+
+    public int parent(int i) { return parents[i >>> CHUNK_BITS][i & (CHUNK - 1)]; }
+    public int pBit(int i) { return bits[i >>> CHUNK_BITS][i & (CHUNK - 1)] & 1; }
+    public int qBit(int i) { return bits[i >>> CHUNK_BITS][i & (CHUNK - 1)] >>> 1; }
+    public float h(int i) { return hs[i >>> CHUNK_BITS][i & (CHUNK - 1)]; }
+    public int depth(int i) { return depths[i >>> CHUNK_BITS][i & (CHUNK - 1)]; }
+
+    /**
+     * Rebuilds p and q by walking up to the root.
+     * @param i a node
+     * @return { p, q }
+     */
+    public BigInteger[] factors(int i)
+    {
+        final int len = (depth(i) >>> 3) + 1;
+        final byte[] p = new byte[len], q = new byte[len]; // big-endian
+        for (int n = i; NONE != n; n = parent(n))
+        {
+            final int d = depth(n), b = bits[n >>> CHUNK_BITS][n & (CHUNK - 1)];
+            if (0 != (b & 1)) p[len - 1 - (d >>> 3)] |= 1 << (d & 7);
+            if (0 != (b & 2)) q[len - 1 - (d >>> 3)] |= 1 << (d & 7);
+        }
+        return new BigInteger[] { new BigInteger(1, p), new BigInteger(1, q) };
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return bytes held by the chunks
+     */
+    public long bytes()
+    {
+        long chunks = 0;
+        for (int[] chunk : parents) if (null != chunk) ++chunks;
+        return chunks * CHUNK * (4 + 1 + 4 + 2);
+    }
+
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            bits = new byte[0][]; hs = new float[0][]; depths = new short[0][];
+            parents = new int[0][];
+            size = 0;
+        }
+        finally { lock.unlock(); }
+    }
+}
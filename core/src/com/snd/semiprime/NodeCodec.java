@@ -0,0 +1,81 @@
+package com.snd.semiprime;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of search nodes for anything that keeps them outside the
+ * heap, e.g. spilled frontier runs. A record must hold enough to rebuild the
+ * node without recomputing its heuristic.
+ *
+ * The solvers share one layout, built w/the static helpers below: h (8 bytes),
+ * depth (4 bytes), then p and q as (depth/8)+1 little-endian bytes each, which
+ * is enough for every bit up to depth. s is recomputed when a node is read.
+ *
+ * @param <T> node type
+ */
+public interface NodeCodec<T>
+{
+  /**
+   * @return upper bound on the size of any record this codec writes
+   */
+  int maxBytes();
+
+  /**
+   * @param n node to encode
+   * @return size of the record n encodes to
+   */
+  int bytes(T n);
+
+  /**
+   * Writes n at the buffer's position, advancing it by {@link #bytes(Object)}.
+   * @param n node to encode
+   * @param to buffer w/at least bytes(n) remaining
+   */
+  void write(T n, ByteBuffer to);
+
+  /**
+   * Reads one record at the buffer's position, advancing past it.
+   * @param from buffer positioned at a record
+   * @return the decoded node
+   */
+  T read(ByteBuffer from);
+
+  /** @return bytes needed for p or q of a node at this depth */
+  static int factorBytes(int depth) { return (depth >> 3) + 1; }
+
+  /** @return bytes in a record of the shared layout for a node at this depth */
+  static int recordBytes(int depth) { return 12 + 2 * factorBytes(depth); }
+
+  static void putFactor(ByteBuffer to, BigInteger f, int len)
+  {
+    final byte[] bytes = f.toByteArray(); // big-endian, maybe w/a leading sign byte
+    for (int i = 1; i <= len; ++i) to.put(i <= bytes.length ? bytes[bytes.length - i] : 0);
+  }
+
+  static BigInteger getFactor(ByteBuffer from, int len)
+  {
+    final byte[] bytes = new byte[len];
+    for (int i = len-1; i >= 0; --i) bytes[i] = from.get();
+    return new BigInteger(1, bytes);
+  }
+
+  static void putFactor(ByteBuffer to, long hi, long lo, int len)
+  {
+    for (int i = 0; i < len; ++i) to.put((byte) (i < 8 ? lo >>> (i << 3) : hi >>> ((i-8) << 3)));
+  }
+
+  static long getFactorLo(ByteBuffer from, int len)
+  {
+    long lo = 0;
+    for (int i = 0; i < len && i < 8; ++i) lo |= (from.get() & 0xffL) << (i << 3);
+    return lo;
+  }
+
+  static long getFactorHi(ByteBuffer from, int len)
+  {
+    long hi = 0;
+    for (int i = 8; i < len; ++i) hi |= (from.get() & 0xffL) << ((i-8) << 3);
+    return hi;
+  }
+}
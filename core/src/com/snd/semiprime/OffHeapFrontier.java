@@ -0,0 +1,312 @@
+package com.snd.semiprime;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Strictly ordered frontier that keeps nodes out of the Java heap. Each node is
+ * one fixed-size record, {@link NodeCodec#maxBytes()} long, in a direct buffer
+ * slab; the heap itself is a pair of primitive arrays (h, record slot), so the
+ * garbage collector never sees the frontier.
+ *
+ * Encoding and decoding happen outside the lock, through a per-thread scratch
+ * buffer; the lock only covers copying records and sifting the index heap.
+ * Freed slots are reused, but slabs are kept until {@link #clear()}.
+ *
+ * @param <T> node type
+ */
+public class OffHeapFrontier<T> implements Frontier<T>
+{
+  public static final int DEFAULT_SLAB_BYTES = 64 << 20;
+
+  private final NodeCodec<T>                codec;
+  private final ToDoubleFunction<? super T> h;
+  private final int                         record; ///< bytes per record
+  private final int                         perSlab; ///< records per slab
+
+  private final ReentrantLock lock     = new ReentrantLock();
+  private final Condition     notEmpty = lock.newCondition();
+
+  // everything below is guarded by lock
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private int[]    free  = new int[1024]; ///< released slots
+  private int      freed = 0;
+  private int      slots = 0; ///< slots ever handed out
+  private double[] keys  = new double[1024]; ///< heap of h values...
+  private int[]    index = new int[1024]; ///< ...and the slot each belongs to
+  private int      size  = 0;
+
+  private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(0));
+
+  /**
+   * @param codec encodes nodes into records
+   * @param h priority of a node
+   */
+  public OffHeapFrontier(NodeCodec<T> codec, ToDoubleFunction<? super T> h)
+  {
+    if (null == codec) throw new IllegalArgumentException("off-heap frontier needs a node codec");
+
+    this.codec = codec;
+    this.h = h;
+    this.record = codec.maxBytes();
+    this.perSlab = Math.max(1, DEFAULT_SLAB_BYTES / record);
+  }
+
+  @Override public boolean offer(T t) { return offerAll(Collections.singletonList(t)); }
+
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    if (ts.isEmpty()) return true;
+
+    // encode outside the lock, one record per stride
+    final int n = ts.size();
+    final ByteBuffer buffer = scratch(n);
+    final double[] hs = new double[n];
+    int i = 0;
+    for (T t : ts)
+    {
+      buffer.position(i * record);
+      codec.write(t, buffer);
+      hs[i++] = h.applyAsDouble(t);
+    }
+
+    lock.lock();
+    try
+    {
+      for (i = 0; i < n; ++i)
+      {
+        final int slot = allocate();
+        final ByteBuffer slab = slabs.get(slot / perSlab);
+        slab.position((slot % perSlab) * record);
+        slab.put(buffer.array(), i * record, record);
+        push(hs[i], slot);
+      }
+      if (n > 1) notEmpty.signalAll(); else notEmpty.signal();
+      return true;
+    }
+    finally { lock.unlock(); }
+  }
+
+  @Override public T poll()
+  {
+    final List<T> to = new ArrayList<>(1);
+    return 0 != drainTo(to, 1) ? to.get(0) : null;
+  }
+
+  @Override public T poll(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try
+    {
+      while (0 == size)
+      {
+        if (nanos <= 0) return null;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+    }
+    finally { lock.unlock(); }
+    return poll();
+  }
+
+  @Override public int drainTo(Collection<? super T> to, int max)
+  {
+    ByteBuffer buffer;
+    int n;
+
+    // copy the best records out under the lock...
+    lock.lock();
+    try
+    {
+      n = Math.min(max, size);
+      if (0 == n) return 0;
+      buffer = scratch(n);
+      for (int i = 0; i < n; ++i)
+      {
+        final int slot = pop();
+        final ByteBuffer slab = slabs.get(slot / perSlab);
+        slab.position((slot % perSlab) * record);
+        slab.get(buffer.array(), i * record, record);
+        release(slot);
+      }
+    }
+    finally { lock.unlock(); }
+
+    // ...and decode them outside it
+    for (int i = 0; i < n; ++i)
+    {
+      buffer.position(i * record);
+      to.add(codec.read(buffer));
+    }
+    return n;
+  }
+
+  /**
+   * Cuts the index heap at the h of the max-th worst record, copies the records
+   * above the cut out and re-heapifies the rest in place.
+   */
+  @Override public int drainWorst(Collection<? super T> to, int max)
+  {
+    ByteBuffer buffer;
+    int n = 0;
+
+    lock.lock();
+    try
+    {
+      final int want = Math.min(Math.max(0, max), size);
+      if (0 == want) return 0;
+
+      final double[] sorted = Arrays.copyOf(keys, size);
+      Arrays.sort(sorted);
+      final double cut = sorted[size - want];
+      int ties = 0; // records at the cut that may go
+      for (int i = size - want; i < size && sorted[i] == cut; ++i) ++ties;
+
+      buffer = scratch(want);
+      int kept = 0;
+      for (int i = 0; i < size; ++i)
+      {
+        if (keys[i] > cut || (keys[i] == cut && ties-- > 0))
+        {
+          final ByteBuffer slab = slabs.get(index[i] / perSlab);
+          slab.position((index[i] % perSlab) * record);
+          slab.get(buffer.array(), n++ * record, record);
+          release(index[i]);
+        }
+        else { keys[kept] = keys[i]; index[kept++] = index[i]; }
+      }
+      size = kept;
+      for (int i = (size >>> 1) - 1; i >= 0; --i) sift(i, keys[i], index[i]);
+    }
+    finally { lock.unlock(); }
+
+    for (int i = 0; i < n; ++i)
+    {
+      buffer.position(i * record);
+      to.add(codec.read(buffer));
+    }
+    return n;
+  }
+
+  @Override public int snapshot(Collection<? super T> to)
+  {
+    ByteBuffer buffer;
+    int n;
+
+    // copy the records out under the lock, leaving the heap as it is...
+    lock.lock();
+    try
+    {
+      n = size;
+      if (0 == n) return 0;
+      buffer = scratch(n);
+      for (int i = 0; i < n; ++i)
+      {
+        final ByteBuffer slab = slabs.get(index[i] / perSlab);
+        slab.position((index[i] % perSlab) * record);
+        slab.get(buffer.array(), i * record, record);
+      }
+    }
+    finally { lock.unlock(); }
+
+    // ...and decode them outside it
+    for (int i = 0; i < n; ++i)
+    {
+      buffer.position(i * record);
+      to.add(codec.read(buffer));
+    }
+    return n;
+  }
+
+  @Override public int size()
+  {
+    lock.lock();
+    try { return size; }
+    finally { lock.unlock(); }
+  }
+
+  @Override public void clear()
+  {
+    lock.lock();
+    try { slabs.clear(); freed = 0; slots = 0; size = 0; }
+    finally { lock.unlock(); }
+  }
+
+  /**
+   * @return bytes held by slabs and index arrays
+   */
+  public long bytes()
+  {
+    lock.lock();
+    try { return (long) slabs.size() * perSlab * record + 12L * keys.length + 4L * free.length; }
+    finally { lock.unlock(); }
+  }
+
+  /**
+   * @param n records needed
+   * @return this thread's scratch buffer, cleared and large enough for n records
+   */
+  private ByteBuffer scratch(int n)
+  {
+    ByteBuffer buffer = scratch.get();
+    if (buffer.capacity() < n * record) scratch.set(buffer = ByteBuffer.allocate(Math.max(n, 64) * record));
+    buffer.clear();
+    return buffer;
+  }
+
+  private int allocate()
+  {
+    if (0 != freed) return free[--freed];
+    if (slots == slabs.size() * perSlab) slabs.add(ByteBuffer.allocateDirect(perSlab * record));
+    return slots++;
+  }
+
+  private void release(int slot)
+  {
+    if (freed == free.length) free = Arrays.copyOf(free, free.length << 1);
+    free[freed++] = slot;
+  }
+
+  private void push(double key, int slot)
+  {
+    if (size == keys.length) { keys = Arrays.copyOf(keys, size << 1); index = Arrays.copyOf(index, size << 1); }
+
+    int i = size++;
+    while (i > 0)
+    {
+      final int parent = (i - 1) >>> 1;
+      if (keys[parent] <= key) break;
+      keys[i] = keys[parent]; index[i] = index[parent];
+      i = parent;
+    }
+    keys[i] = key; index[i] = slot;
+  }
+
+  private int pop()
+  {
+    final int top = index[0];
+    --size;
+    sift(0, keys[size], index[size]);
+    return top;
+  }
+
+  /// moves (key, slot) down from position i until neither child is smaller
+  private void sift(int i, double key, int slot)
+  {
+    for (int child; (child = (i << 1) + 1) < size; i = child)
+    {
+      if (child + 1 < size && keys[child + 1] < keys[child]) ++child;
+      if (key <= keys[child]) break;
+      keys[i] = keys[child]; index[i] = index[child];
+    }
+    keys[i] = key; index[i] = slot;
+  }
+}
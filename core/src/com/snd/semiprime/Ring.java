@@ -0,0 +1,102 @@
+package com.snd.semiprime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for any number of producers and consumers: a
+ * power-of-two array of slots, each w/a sequence number that tells a producer
+ * whether the slot is free for its lap and a consumer whether it holds an
+ * element from its lap. Neither side ever blocks; a full or empty ring just
+ * returns false or null and the caller decides how to wait.
+ *
+ * @param <T> element type
+ */
+public class Ring<T>
+{
+  private final Object[]        slots;
+  private final AtomicLongArray sequence; ///< per slot: its position when free to write, position+1 once written
+  private final int             mask;
+  private final AtomicLong      head = new AtomicLong(0); ///< next position to read
+  private final AtomicLong      tail = new AtomicLong(0); ///< next position to write
+
+  /**
+   * @param capacity most elements held at once; rounded up to a power of two
+   */
+  public Ring(int capacity)
+  {
+    if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("invalid ring capacity: " + capacity);
+
+    final int size = capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : 1;
+    this.slots = new Object[size];
+    this.sequence = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; ++i) sequence.set(i, i);
+  }
+
+  /**
+   * @param t element to add
+   * @return false if the ring is full
+   */
+  public boolean offer(T t)
+  {
+    long position = tail.get();
+    while (true)
+    {
+      final int i = (int) (position & mask);
+      final long lag = sequence.get(i) - position;
+      if (0 == lag)
+      {
+        if (tail.compareAndSet(position, position + 1))
+        {
+          slots[i] = t;
+          sequence.set(i, position + 1); // publishes the slot
+          return true;
+        }
+        position = tail.get();
+      }
+      else if (lag < 0) return false; // still holds last lap's element
+      else position = tail.get(); // another producer got here first
+    }
+  }
+
+  /**
+   * @return the oldest element, or null if the ring is empty
+   */
+  @SuppressWarnings("unchecked")
+  public T poll()
+  {
+    long position = head.get();
+    while (true)
+    {
+      final int i = (int) (position & mask);
+      final long lag = sequence.get(i) - (position + 1);
+      if (0 == lag)
+      {
+        if (head.compareAndSet(position, position + 1))
+        {
+          final T t = (T) slots[i];
+          slots[i] = null;
+          sequence.set(i, position + slots.length); // frees the slot for the next lap
+          return t;
+        }
+        position = head.get();
+      }
+      else if (lag < 0) return null; // not written yet
+      else position = head.get(); // another consumer got here first
+    }
+  }
+
+  /**
+   * @return elements held; only a snapshot while other threads use the ring
+   */
+  public int size()
+  {
+    return (int) Math.max(0, Math.min(slots.length, tail.get() - head.get()));
+  }
+
+  public int capacity()
+  {
+    return slots.length;
+  }
+}
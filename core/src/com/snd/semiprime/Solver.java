@@ -5,15 +5,28 @@ import com.snd.semiprime.client.Client;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -30,6 +43,21 @@ public class Solver implements Runnable, Serializable
       BUILD_NUMBER.charAt(BUILD_NUMBER.length()-1)
       ;
 
+  /// how workers walk the search tree
+  public enum Strategy
+  {
+    BEST_FIRST("Best-First", "Expand the lowest-h node of a shared frontier; fastest, but memory grows w/the frontier."),
+    DEPTH_FIRST("Iterative Deepening", "h-ordered depth-first search below a rising h threshold; memory grows only w/depth."),
+    BEAM("Beam", "Expand one depth at a time in parallel, keeping only the beamWidth() lowest-h nodes; may fail."),
+    ;
+
+    private final String name, desc;
+    Strategy(String name, String desc) { this.name = name; this.desc = desc; }
+
+    @Override public String toString() { return name; }
+    public String description() { return desc; }
+  }
+
   /// default handler for thread exceptions
   private static final Thread.UncaughtExceptionHandler handler = (thread,t) -> Log.e(t);
 
@@ -43,16 +71,29 @@ public class Solver implements Runnable, Serializable
   private static final AtomicBoolean networkSearch    = new AtomicBoolean(false); ///< true if and only if this search is hosted remotely
   private static final AtomicBoolean networkHost      = new AtomicBoolean(false); ///< true if and only if this is the search host
   private static final AtomicBoolean detailedStats    = new AtomicBoolean(false); ///< if true, detailed stats will be recorded during search (expensive, debug)
-  private static final AtomicBoolean compressMemory   = new AtomicBoolean(false); ///< if true, will take additional steps to trade CPU for more memory
+  private static final AtomicBoolean compressMemory   = new AtomicBoolean(false); ///< if true, best-first nodes are always packed, trading CPU for memory; overrides favorPerformance
   private static final AtomicBoolean background       = new AtomicBoolean(false); ///< must wait until machine is idle before working
   private static final AtomicBoolean printAllNodes    = new AtomicBoolean(false); ///< if false, fewer sanity checks are performed on values
   private static final AtomicBoolean restrictNetwork  = new AtomicBoolean(false); ///< allow frequent network comm. during search?
   private static final AtomicBoolean restrictDisk     = new AtomicBoolean(true); ///< should we allow disk i/o during search to cache nodes?
-  private static final AtomicBoolean favorPerformance = new AtomicBoolean(true); ///< if true, will take additional steps to trade memory for more CPU;
+  private static final AtomicBoolean favorPerformance = new AtomicBoolean(false); ///< if true, best-first nodes are always kept whole; if neither this nor compressMemory is set, heap pressure decides
+  private static final AtomicBoolean incremental      = new AtomicBoolean(true); ///< if true, children derive s from their parent's s instead of a full multiply
+  private static final AtomicBoolean fixedWidth       = new AtomicBoolean(true); ///< if true, targets of at most 128 bits are searched w/primitive words instead of BigIntegers
   private static final AtomicBoolean stats            = new AtomicBoolean(true); ///< timer prints stats according to user preferences
+  private static final AtomicBoolean autoProcessors   = new AtomicBoolean(false); ///< if true, best-first searches pick their own worker count, up to processors()
   private static final AtomicInteger processors       = new AtomicInteger(1); ///< num cores allowed
+  private static final AtomicInteger beamWidth        = new AtomicInteger(1024); ///< nodes kept per depth by the beam strategy
   private static final AtomicInteger processorCap     = new AtomicInteger(100); ///< percentage use allowed
   private static final AtomicInteger memoryCap        = new AtomicInteger(100); ///< percentage use allowed
+  private static final AtomicInteger buckets          = new AtomicInteger(4096); ///< h resolution of the bucketed frontier
+  private static final AtomicInteger batch            = new AtomicInteger(0); ///< nodes popped per frontier call; 0 sizes it from the thread count
+  private static final AtomicInteger checkpointPeriod = new AtomicInteger(15); ///< minutes between checkpoints
+  private static final AtomicInteger idleMinutes      = new AtomicInteger(5); ///< minutes the machine must be idle before a background search works
+  private static final AtomicInteger scorers          = new AtomicInteger(0); ///< threads computing h in the pipelined mode; 0 scores inline in expand()
+  private static final AtomicInteger inserters        = new AtomicInteger(1); ///< threads adding scored nodes to open in the pipelined mode
+
+  private static final AtomicReference<Frontier.Type> frontier = new AtomicReference<>(Frontier.Type.HEAP); ///< open list implementation; only HEAP pops in strict h order
+  private static final AtomicReference<Strategy>      strategy = new AtomicReference<>(Strategy.BEST_FIRST); ///< search strategy
 
   // target info
   private static final AtomicInteger pLength      = new AtomicInteger(0); ///< optional: if set, only primes w/this len will be searched for
@@ -68,26 +109,46 @@ public class Solver implements Runnable, Serializable
   private static final AtomicLong lifetimeTotalDepth  = new AtomicLong(0); ///< nanoseconds
   private static final AtomicLong lifetimeMaxDepth    = new AtomicLong(0);
 
-  // wait-for-work timeouts
+  // timing
   private static final long     statsPeriodMillis    = 10000L;
-  private static final long     checkForWorkMaxFails = 60L;
-  private static final long     checkForWorkTimeout  = 1000L;
-  private static final TimeUnit checkForWorkTimeUnit = TimeUnit.NANOSECONDS;
+  private static final int      threadStatsStride    = 16; ///< longs between per-thread counters so they never share a cache line
+  private static final double   depthFirstStep       = 1.0 / 64.0; ///< least h threshold increase per iterative deepening pass
+  private static final int      packedStride         = 16; ///< depths between fully materialized nodes when compressMemory is set
+  private static final int      pipelineRing         = 1 << 12; ///< families or nodes held between pipeline stages
+  private static final long     pipelineIdleNanos    = 50000L; ///< how long a pipeline stage parks when it has nothing to do
+  private static final long     poolPeriodMillis     = 1000L; ///< how often the worker pool follows processors() or, in auto mode, measures
+  private static final double   poolMinGain          = 0.05; ///< least throughput gain for which auto mode keeps an added worker
+  private static final double   poolMaxFrontierShare = 0.5; ///< share of worker time in frontier calls past which auto mode adds no workers
 
   // optional
-  private static final List<Heuristic>                 heuristics = new CopyOnWriteArrayList<>(); ///< the list of heuristics to use for this search
-  private static final AtomicReference<Consumer<Node>> callback   = new AtomicReference<>(null); ///< a function to receive the goal node (or null) upon completion
-  private static final AtomicReference<PrintWriter>    csv        = new AtomicReference<>(null); ///< path to csv file that will be written if set
+  private static final List<Heuristic>                 heuristics     = new CopyOnWriteArrayList<>(); ///< the list of heuristics to use for this search
+  private static final AtomicReference<Consumer<Node>> callback       = new AtomicReference<>(null); ///< a function to receive the goal node (or null) upon completion
+  private static final AtomicReference<PrintWriter>    csv            = new AtomicReference<>(null); ///< path to csv file that will be written if set
+  private static final AtomicReference<Path>           checkpointPath = new AtomicReference<>(null); ///< best-first searches are periodically saved here if set
 
   //////////////////////////////////////////////////////////////////////////////
   // instance vars
 
   // this instance's search state
   private final List<Thread>                  threads = Collections.synchronizedList(new ArrayList<>()); ///< worker threads
-  private final PriorityBlockingQueue<Node>   open    = new PriorityBlockingQueue<>(); ///< unbounded queue backed by heap for fast pop() behavior w/o sorting
+  private final Frontier<Node>                open; ///< open list, implementation chosen by frontier()
+  private final Frontier<WordNode>            words; ///< open list used instead of open by the fixed-width engine
+  private final Frontier<PackedNode>          packed; ///< open list used instead of open when compressMemory is set
+  private final DepthFirstSearch<Node>        deep; ///< set instead of using open by the depth-first strategy
+  private final DepthFirstSearch<WordNode>    deepWords; ///< fixed-width counterpart of deep
+  private final BeamSearch<Node>              beam; ///< set instead of using open by the beam strategy
+  private final BeamSearch<WordNode>          beamWords; ///< fixed-width counterpart of beam
+  private final ForkJoinPool                  beamPool; ///< runs each beam level
   private final ConcurrentHashMap<Node, Node> closed  = new ConcurrentHashMap<>(); ///< closed hash table
   private final AtomicReference<Node>         goal    = new AtomicReference<>(null); ///< set if/when goal is found; if set, search will end
   private final AtomicBoolean                 solving = new AtomicBoolean(false);
+  private final NodeFormat                    nodeFormat; ///< record format of open, used for spills and checkpoints
+  private final WordNodeFormat                wordFormat; ///< record format of words
+  private final PackedNodeFormat              packedFormat; ///< record format of packed
+  private final Epoch                         epoch; ///< keeps workers' batches apart from checkpoints copying the open list
+  private final Pipeline                      pipeline; ///< set if children are scored and inserted by their own threads
+  private final Pool                          pool; ///< set if best-first workers may be added and retired while the search runs
+  private final Idle                          idle; ///< parks workers w/nothing to do and detects when none ever will
 
   // some stats tracking
   private final AtomicReference<Timer> statsTimer    = new AtomicReference<>(null); ///< periodic reporting on search
@@ -97,28 +158,43 @@ public class Solver implements Runnable, Serializable
   private final AtomicLong             expanded      = new AtomicLong(0);
   private final AtomicLong             totalDepth    = new AtomicLong(0); ///< nanoseconds
   private final AtomicInteger          maxDepthSoFar = new AtomicInteger(0);
+  private final AtomicLongArray        threadExpanded; ///< expansions per worker, padded by threadStatsStride
+  private final AtomicReference<Timer> checkpointTimer   = new AtomicReference<>(null); ///< periodic checkpoints
+  private final AtomicLong             checkpoints       = new AtomicLong(0);
+  private final AtomicLong             checkpointsFailed = new AtomicLong(0);
+  private final AtomicLong             throttled         = new AtomicLong(0); ///< nanoseconds workers parked to hold processorCap
+  private final AtomicReference<MemoryPressure> pressure = new AtomicReference<>(null); ///< set while heap pressure picks the node format of a best-first search
+  private final AtomicReference<SystemLoad>     load     = new AtomicReference<>(null); ///< set while a background search runs
 
   private long startTime = 0; ///< nanoseconds
   private long endTime = 0; ///< nanoseconds
+  private long resumedTime = 0; ///< nanoseconds searched before the checkpoint this search resumed from
 
   //////////////////////////////////////////////////////////////////////////////
   // per-search cache
 
   // shared cache vars
   final BigInteger cacheS;
-  final double     cacheSSetBitsOverLen2; ///< cached internal len
   final int        cacheSLen2; ///< cached bit len
+  final long       cacheSHi; ///< upper 64 bits of the target, used by the fixed-width engine
+  final long       cacheSLo; ///< lower 64 bits of the target, used by the fixed-width engine
+  final HeuristicFunction.Target cacheTarget; ///< the target as heuristics see it
 
   // mutable state cache
   private Client  cacheClient        = null;
-  private boolean cachePaused        = false;
+  private volatile boolean cachePaused = false;
   private boolean cachePrintAllNodes = false;
   private boolean cacheDetailedStats = false;
+  private boolean cacheIncremental   = true;
+  private boolean cacheFixedWidth    = false;
+  private boolean cacheCompressMemory = false;
+  private boolean cacheAdaptiveMemory = false;
 
   // initial state cache
   private final Thread         cacheThread;
   private final Consumer<Node> cacheCallback;
   private final Heuristic[]    cacheHeuristics;
+  private final HeuristicFunction cacheEvaluator; ///< cacheHeuristics averaged in one call, see Heuristic.fuse()
   private final PrintWriter    cacheCsv;
 
   // target info cache
@@ -135,14 +211,24 @@ public class Solver implements Runnable, Serializable
   // state cache
   private final int     cacheMaxDepth; ///< max(pLength, qLength)
   private final int     cacheProcessors;
+  private final int     cacheBuckets;
+  private final int     cacheBatch;
+  private final int     cacheBeamWidth;
+  private final Frontier.Type cacheFrontier;
+  private final Strategy      cacheStrategy;
   private final boolean cacheNetworkSearch;
+  private final boolean cacheRestrictDisk;
   private final boolean cacheNetworkHost;
   private final boolean cacheStats;
+  private final Path    cacheCheckpoint;
+  private final long    cacheCheckpointMillis;
+  private final int     cacheScorers;
+  private final int     cacheMaxProcessors;
+  private final boolean cacheAutoProcessors;
+  private final int     cacheInserters;
 
   // timeout cache
   private final long     cacheStatsPeriodMillis;
-  private final long     cacheCheckForWorkTimeout;
-  private final TimeUnit cacheCheckForWorkTimeUnit;
 
   public Solver(final BigInteger semiprime)
   {
@@ -165,24 +251,41 @@ public class Solver implements Runnable, Serializable
       cacheSString10 = cacheS.toString(10);
       cacheSLenInternal = cacheSStringInternal.length();
       cacheSLen2 = cacheS.bitLength();
+      cacheSHi = cacheS.shiftRight(64).longValue();
+      cacheSLo = cacheS.longValue();
+      cacheTarget = new HeuristicFunction.Target(cacheS);
       cacheSLen10 = cacheSString10.length();
       cacheSSetBits = cacheS.bitCount();
       cachePLen2 = pLength();
       cacheQLen2 = qLength();
-      cacheProcessors = Math.max(0, Math.min(Runtime.getRuntime().availableProcessors(), processors()));
-      cacheSSetBitsOverLen2 = (double) cacheSSetBits / (double) cacheSLen2;
+      cacheMaxProcessors = Runtime.getRuntime().availableProcessors();
+      cacheProcessors = Math.max(0, Math.min(cacheMaxProcessors, processors()));
+      cacheAutoProcessors = autoProcessors();
       cacheMaxDepth = (0 < cachePLen2 || 0 < cacheQLen2 ? Math.max(cachePLen2, cacheQLen2) : (cacheSLen2 -1)) - 1;  // -1 converts len -> depth, second -1 on spLen is multiplication logic
       cachePaused = paused();
       cacheNetworkSearch = networkSearch();
+      cacheRestrictDisk = restrictDisk();
       cacheNetworkHost = networkHost();
       cacheStats = stats();
       cacheDetailedStats = detailedStats();
       cachePrintAllNodes = printAllNodes();
+      cacheIncremental = incremental();
+      cacheFixedWidth = fixedWidth() && 2 == cacheInternalBase && cacheSLen2 <= 128;
+      cacheStrategy = strategy();
+      cacheAdaptiveMemory = !compressMemory() && !favorPerformance() && 0 == scorers(); // no format forced, let heap pressure decide; scorers need whole nodes
+      cacheCompressMemory = (compressMemory() || cacheAdaptiveMemory) && !cacheFixedWidth && Strategy.BEST_FIRST == cacheStrategy; // word nodes are already compact
+      cacheAdaptiveMemory &= cacheCompressMemory;
+      cacheFrontier = frontier();
+      cacheBuckets = buckets();
+      cacheBatch = 0 < batch() ? batch() : autoBatch(cacheProcessors);
+      cacheBeamWidth = beamWidth();
       cacheCsv = csv();
       cacheStatsPeriodMillis = statsPeriodMillis;
-      cacheCheckForWorkTimeout = checkForWorkTimeout;
-      cacheCheckForWorkTimeUnit = checkForWorkTimeUnit;
       cacheCallback = callback();
+      cacheCheckpoint = Strategy.BEST_FIRST == cacheStrategy && !cacheNetworkHost ? checkpointPath() : null;
+      cacheCheckpointMillis = TimeUnit.MINUTES.toMillis(checkpointPeriod());
+      cacheScorers = Strategy.BEST_FIRST == cacheStrategy && !cacheFixedWidth && !cacheCompressMemory && null == cacheCheckpoint ? scorers() : 0; // in-flight nodes aren't in open to checkpoint
+      cacheInserters = Math.max(1, inserters());
 
       // cache selected heuristics for this run
       cacheHeuristics = new Heuristic[ Solver.heuristics.size() ]; int i = -1;
@@ -191,9 +294,31 @@ public class Solver implements Runnable, Serializable
         if (++i >= cacheHeuristics.length) throw new NullPointerException("heuristics changed during prep");
         else cacheHeuristics[i] = heuristic;
       }
+      cacheEvaluator = Heuristic.fuse(cacheHeuristics);
     }
     catch (Throwable t) { Log.e(t); throw new NullPointerException("cache preparation failure"); }
 
+    // best-first workers form an elastic pool, so leave room for as many as the machine has
+    final boolean elastic = Strategy.BEST_FIRST == cacheStrategy && 0 < cacheProcessors && 0 == cacheScorers && !cacheNetworkHost;
+    threadExpanded = new AtomicLongArray(Math.max(1, elastic ? cacheMaxProcessors : cacheProcessors) * threadStatsStride);
+
+    // build the open lists, spilling to disk past memoryCap() if allowed
+    nodeFormat = new NodeFormat();
+    wordFormat = new WordNodeFormat();
+    packedFormat = new PackedNodeFormat();
+    epoch = null != cacheCheckpoint ? new Epoch(threadExpanded.length() / threadStatsStride) : null;
+    pipeline = 0 < cacheScorers && !cacheNetworkHost ? new Pipeline() : null;
+    pool = elastic ? new Pool() : null;
+    idle = null != pool ? new Idle(pool.live::get, () -> 0L) : new Idle(() -> cacheProcessors, null != pipeline ? pipeline.inFlight::get : () -> 0L);
+    open = spillable(frontier(n -> n.h(), nodeFormat), nodeFormat, n -> n.h());
+    words = spillable(frontier(n -> n.h, wordFormat), wordFormat, n -> n.h);
+    packed = spillable(frontier(n -> n.h, packedFormat), packedFormat, n -> n.h);
+    deep = Strategy.DEPTH_FIRST == cacheStrategy && !cacheFixedWidth ? new DepthFirstSearch<Node>(Math.max(1, cacheProcessors), depthFirstStep, n -> n.h(), this::goal, this::halted) : null;
+    deepWords = Strategy.DEPTH_FIRST == cacheStrategy && cacheFixedWidth ? new DepthFirstSearch<WordNode>(Math.max(1, cacheProcessors), depthFirstStep, n -> n.h, this::goal, this::halted) : null;
+    beamPool = Strategy.BEAM == cacheStrategy ? new ForkJoinPool(Math.max(1, cacheProcessors)) : null;
+    beam = null != beamPool && !cacheFixedWidth ? new BeamSearch<Node>(beamPool, cacheBeamWidth, n -> n.h(), this::goal, this::halted) : null;
+    beamWords = null != beamPool && cacheFixedWidth ? new BeamSearch<WordNode>(beamPool, cacheBeamWidth, n -> n.h, this::goal, this::halted) : null;
+
     // if we are the search host, build worker threads to search until goal is found or no nodes left
     if (cacheNetworkHost)
     {
@@ -202,17 +327,31 @@ public class Solver implements Runnable, Serializable
     // otherwise we are either a local or network search client, prepare workers
     else
     {
-      IntStream.range(1, cacheProcessors+1).forEach((i) -> threads.add(new Thread(() ->
+      // the beam strategy needs only one thread to drive its fork/join pool, and the elastic pool one to start and stop its workers
+      if (null != pool) threads.add(new Thread(pool::run, "pool"));
+      else IntStream.range(1, (null != beamPool ? Math.min(1, cacheProcessors) : cacheProcessors)+1).forEach((i) -> threads.add(new Thread(() ->
       {
         try
         {
           Log.o("thread " + i + ": started");
-          while (expand( pop() )) { while (cachePaused) Thread.sleep(100); }
+          if (null != beamWords) beamWords.search(new WordNode(), pooled(this::expand), idle::hold);
+          else if (null != beam) beam.search(new Node(), pooled(this::expand), idle::hold);
+          else if (null != deepWords) deepWords.work(counted(i, this::expand), idle::hold);
+          else if (null != deep) deep.work(counted(i, this::expand), idle::hold);
+          else if (null != pipeline) pipeline.generate(i);
+          else work(i);
         }
         catch (Throwable ignored) {}
         finally { Log.o("thread " + i + ": finished"); }
       })));
 
+      // pipelined searches score and insert children on their own threads
+      if (null != pipeline)
+      {
+        IntStream.range(1, cacheScorers+1).forEach((i) -> threads.add(new Thread(pipeline::score, "scorer " + i)));
+        IntStream.range(1, cacheInserters+1).forEach((i) -> threads.add(new Thread(pipeline::insert, "inserter " + i)));
+      }
+
       // if networked search, prepare special network sync thread
       if (cacheNetworkSearch)
       {
@@ -240,6 +379,25 @@ public class Solver implements Runnable, Serializable
     lifetimeSolvers.incrementAndGet();
   }
 
+  private <T extends Comparable<? super T>> Frontier<T> frontier(ToDoubleFunction<T> h, NodeCodec<T> codec)
+  {
+    return cacheFrontier.create(cacheProcessors, cacheBuckets, h, codec);
+  }
+
+  private <T> Frontier<T> spillable(Frontier<T> frontier, NodeCodec<T> codec, ToDoubleFunction<T> h)
+  {
+    return cacheRestrictDisk ? frontier : new SpillFrontier<>(frontier, codec, h, Solver::memoryFull);
+  }
+
+  /**
+   * @return true if the heap holds more than memoryCap() percent of its max size
+   */
+  static boolean memoryFull()
+  {
+    final Runtime runtime = Runtime.getRuntime();
+    return (runtime.totalMemory() - runtime.freeMemory()) * 100L > runtime.maxMemory() * (long) memoryCap();
+  }
+
   @Override public String toString()
   {
     return null != generated ? "solver: " + solvers() +
@@ -250,14 +408,23 @@ public class Solver implements Runnable, Serializable
         "\ntarget (base " + cacheInternalBase + "): " + cacheSStringInternal +
         "\n\np length (base " + cacheInternalBase + "): " + (0 != cachePLen2 ? cachePLen2 : "any") +
         "\nq length (base " + cacheInternalBase + "): " + (0 != cacheQLen2 ? cacheQLen2 : "any") +
-        "\n\nprocessors: " + cacheProcessors +
+        "\n\nprocessors: " + cacheProcessors + (null != pool ? (cacheAutoProcessors ? " (elastic, auto up to " + processors() + ")" : " (elastic)") : "") +
+        "\nfrontier: " + cacheFrontier + (Frontier.Type.BUCKETED == cacheFrontier ? " (" + cacheBuckets + " buckets)" : "") +
+        "\nbatch: " + cacheBatch +
+        "\npipeline: " + (null != pipeline ? cacheProcessors + " generators, " + cacheScorers + " scorers, " + cacheInserters + " inserters" : "off") +
+        "\nstrategy: " + cacheStrategy + (null != beamPool ? " (width " + cacheBeamWidth + ")" : "") +
         "\nfavorPerformance: " + favorPerformance +
-        "\ncompressMemory: " + compressMemory +
+        "\ncompressMemory: " + cacheCompressMemory + (cacheAdaptiveMemory ? " (adaptive, packing past " + MemoryPressure.DEFAULT_HIGH + "% of memoryCap)" : cacheCompressMemory ? " (full nodes every " + packedStride + " depths)" : "") +
+        "\nincremental: " + cacheIncremental +
+        "\nfixedWidth: " + cacheFixedWidth +
+        "\nrestrictDisk: " + cacheRestrictDisk +
+        "\nmemoryCap: " + memoryCap() + "%" +
+        "\ncheckpoint: " + (null != cacheCheckpoint ? cacheCheckpoint + " (every " + checkpointPeriod() + " min)" : "off") +
         "\nmaxDepthSoFar: " + cacheMaxDepth +
-        "\nbackground: " + background() +
+        "\nbackground: " + background() + (background() ? " (after " + idleMinutes() + " idle min)" : "") +
         "\nprocessorCap: " + processorCap() +
         "\npaused: " + paused() +
-        "\nopen.size(): " + open.size() +
+        "\nopen.size(): " + openSize() +
         "\nclosed.size(): " + closed.size() +
         "\nthreads.size(): " + threads.size() +
         "\n" : "";
@@ -276,8 +443,12 @@ public class Solver implements Runnable, Serializable
       // record the start time
       startTime =  System.nanoTime();
 
-      // push a new root node if open list is empty
-      if (open.isEmpty()) push( new Node() );
+      // push a new root node if open list is empty, or split the tree for depth-first workers
+      if (null != deepWords) deepWords.seed(new WordNode(), this::expand);
+      else if (null != deep) deep.seed(new Node(), this::expand);
+      else if (cacheFixedWidth) { if (words.isEmpty()) push(words, Collections.singletonList(new WordNode()), this::goal); }
+      else if (cacheCompressMemory) { if (packed.isEmpty()) push(packed, Collections.singletonList(new PackedCheckpoint(new Node())), this::goal); }
+      else if (open.isEmpty()) push(open, Collections.singletonList(new Node()), this::goal);
 
       // properly schedule a new timer if stats were requested
       if (cacheStats)
@@ -288,6 +459,28 @@ public class Solver implements Runnable, Serializable
         timer.schedule(new TimerTask() { @Override public void run() { if (cachePaused) return; Log.o( statsToString(cacheDetailedStats) ); } }, statsPeriodMillis, statsPeriodMillis);
       }
 
+      // checkpoints are written on their own timer thread, off the workers' path
+      if (null != cacheCheckpoint)
+      {
+        final Timer timer = new Timer("checkpoint", true);
+        if (!checkpointTimer.compareAndSet(null, timer)) { Log.e("overlapping search request"); return; }
+        timer.schedule(new TimerTask() { @Override public void run() { if (!cachePaused) checkpoint(); } }, cacheCheckpointMillis, cacheCheckpointMillis);
+      }
+
+      // background searches hold their workers until the machine is idle, and again whenever it isn't
+      if (background())
+      {
+        final SystemLoad watch = new SystemLoad(Solver::idleMinutes, idle::wakeAll);
+        if (!load.compareAndSet(null, watch)) { watch.close(); Log.e("overlapping search request"); return; }
+      }
+
+      // adaptive searches keep whole nodes until the old gen nears memoryCap(), then pack
+      if (cacheAdaptiveMemory)
+      {
+        final MemoryPressure watch = new MemoryPressure(Solver::memoryCap);
+        if (!pressure.compareAndSet(null, watch)) { watch.close(); Log.e("overlapping search request"); return; }
+      }
+
       // launch all worker threads and wait for completion
       final AtomicBoolean cancelSearch = new AtomicBoolean(false);
       threads.forEach(thread -> thread.setUncaughtExceptionHandler(handler));
@@ -295,6 +488,20 @@ public class Solver implements Runnable, Serializable
       try { threads.forEach(thread -> { try { if (!cancelSearch.get()) thread.join(); } catch (Throwable t) { Log.o("solver interrupted, cancelling..."); cancelSearch.set(true); } }); } catch (Throwable ignored) {}
       try { threads.forEach(thread -> { try { thread.interrupt(); } catch (Throwable ignored) {} }); } catch (Throwable ignored) {}
 
+      // stop checkpointing; a cancelled search saves where it got to
+      final Timer checkpointer = checkpointTimer.getAndSet(null);
+      if (null != checkpointer)
+      {
+        checkpointer.cancel();
+        if (cancelSearch.get() && null == goal()) checkpoint();
+      }
+
+      // stop watching the heap and the machine
+      final MemoryPressure watch = pressure.getAndSet(null);
+      if (null != watch) watch.close();
+      final SystemLoad system = load.getAndSet(null);
+      if (null != system) system.close();
+
       // cancel the stats timer and record end time
       if (cacheStats)
       {
@@ -304,6 +511,7 @@ public class Solver implements Runnable, Serializable
 
       // clear used thread memory
       threads.clear();
+      if (null != beamPool) beamPool.shutdownNow();
 
       // print full final stats after all work is done
       Log.o( statsToString(true) );
@@ -314,7 +522,8 @@ public class Solver implements Runnable, Serializable
       // write out results to CSV
       if (null != cacheCsv)
       {
-        cacheCsv.write((null != goal() ? (heuristics.toString().replace("[","").replace("]","") + "," + goal().s + "," + goal().p + "," + goal().q + "," + goal().toCsv()) : "no goal found") + "\n");
+        cacheCsv.write((null != goal() ? (heuristics.toString().replace("[","").replace("]","") + "," + goal().s + "," + goal().p + "," + goal().q + "," + goal().toCsv()) : "no goal found,,,,,,,,,,,,,,,,") +
+            "," + cacheStrategy.name() + "," + (null != beamPool ? cacheBeamWidth : 0) + "\n");
         cacheCsv.flush();
       }
     }
@@ -353,42 +562,234 @@ public class Solver implements Runnable, Serializable
   }
 
   /**
-   * tests if goal node
-   * @param n a node to attempt adding
-   * @return false on goal or fatal exception, true indicates successful push
+   * Worker loop shared by both engines: pops up to cacheBatch nodes, expands all of
+   * them and pushes every child they generated in a single frontier call.
+   * @param thread 1-based worker index
+   * @param open the frontier to work on
+   * @param expand appends the valid children of a node to a list
+   * @param goal goal test, which also records the goal
+   * @throws InterruptedException if interrupted while parked
    */
-  private boolean push(Node n)
+  private <T> void work(final int thread, final Frontier<T> open, final BiConsumer<T, List<T>> expand, final Predicate<T> goal) throws InterruptedException
   {
-    if (goal(n)) return false;
-    if (!open.offer(n)) { Log.e("node offer failed"); return false; }
-    return true;
+    final List<T> batch = new ArrayList<>(cacheBatch);
+    final List<T> children = new ArrayList<>(cacheBatch << 2);
+    final Throttle throttle = throttle();
+    final boolean timed = null != pool && cacheAutoProcessors;
+    open.bind(thread-1);
+
+    // parked outside the epoch, so an idle worker never holds up a checkpoint
+    while (idle.await(thread, open))
+    {
+      // no batch is ever in flight while a checkpoint copies open
+      if (null != epoch) epoch.enter(thread);
+      try
+      {
+        final long popped = timed ? System.nanoTime() : 0;
+        if (!pop(open, batch)) continue;
+        final long expanding = timed ? System.nanoTime() : 0;
+        for (T n : batch) expand.accept(n, children);
+        threadExpanded.addAndGet((thread-1) * threadStatsStride, batch.size());
+        final long pushing = timed ? System.nanoTime() : 0;
+        if (!push(open, children, goal)) return;
+        if (timed) pool.timed(popped, expanding, pushing, System.nanoTime());
+      }
+      finally { if (null != epoch) epoch.exit(thread); batch.clear(); children.clear(); }
+      throttle.tick();
+    }
   }
 
   /**
-   * pop available node off open list
-   * @return the next available node or null if goal was found or error occurred
+   * runs the best-first worker loop on whichever open list the search uses
+   * @param thread 1-based worker index
+   * @throws InterruptedException if interrupted while parked
    */
-  @SuppressWarnings("StatementWithEmptyBody")
-  private Node pop()
+  private void work(final int thread) throws InterruptedException
   {
+    if (cacheFixedWidth) work(thread, words, this::expand, this::goal);
+    else if (cacheCompressMemory) work(thread, packed, this::expand, this::goal);
+    else work(thread, open, this::expand, this::goal);
+  }
+
+  /**
+   * Saves the open list, counters and target configuration to checkpointPath(). Workers
+   * are held only while open is copied into a list, which leaves every node where it
+   * was; the list is encoded and written afterwards on the calling thread, while the
+   * search goes on.
+   * @return true if a checkpoint was written
+   */
+  public boolean checkpoint()
+  {
+    if (null == epoch) return false;
+    return cacheFixedWidth ? checkpoint(words, wordFormat) : cacheCompressMemory ? checkpoint(packed, packedFormat) : checkpoint(open, nodeFormat);
+  }
+
+  private <T> boolean checkpoint(final Frontier<T> open, final NodeCodec<T> codec)
+  {
+    final long start = System.nanoTime();
+    final SpillFrontier<T> spill = open instanceof SpillFrontier ? (SpillFrontier<T>) open : null;
+    final List<T> nodes = new ArrayList<>((int) Math.max(0, open.size() - (null != spill ? spill.spilled() : 0)));
+    SpillFrontier.Runs runs = null;
+    final Checkpoint checkpoint;
+
+    idle.freeze();
+    epoch.close();
     try
     {
-      long fails = 0; Node node;
-      while (null == (node = open.poll(cacheCheckForWorkTimeout, cacheCheckForWorkTimeUnit)))
-      {
-        if (++fails > checkForWorkMaxFails) break;
-      }
-      return null != goal() ? null : node;
+      // spilled nodes stay in their run files, which are copied in while writing
+      if (null != spill) runs = spill.snapshotRuns(nodes); else open.snapshot(nodes);
+      checkpoint = new Checkpoint(cacheS, cacheInternalBase, cachePLen2, cacheQLen2, cacheFixedWidth, Arrays.asList(cacheHeuristics),
+          generated(), regenerated(), ignored(), expanded(), totalDepth(), maxDepthSoFar.get(), resumedTime + System.nanoTime() - startTime,
+          nodes.size() + (null != runs ? runs.nodes() : 0));
+    }
+    catch (Throwable t) { Log.e("checkpoint failed", t); checkpointsFailed.incrementAndGet(); return false; }
+    finally { epoch.open(); idle.thaw(); }
+    final long held = System.nanoTime() - start;
+
+    try (final SpillFrontier.Runs spilled = runs)
+    {
+      final long bytes = checkpoint.write(cacheCheckpoint, nodes, codec, spilled);
+      checkpoints.incrementAndGet();
+      Log.o("checkpoint: " + checkpoint.nodes + " nodes (" + (checkpoint.nodes - nodes.size()) + " copied from disk), " + bytes + " bytes to " + cacheCheckpoint +
+          "; workers held " + held / 1000000L + " ms, " + (System.nanoTime() - start - held) / 1000000L + " ms writing");
+      return true;
+    }
+    catch (Throwable t) { Log.e("checkpoint failed", t); checkpointsFailed.incrementAndGet(); return false; }
+  }
+
+  /**
+   * Rebuilds a best-first search from a checkpoint. The target, prime lengths,
+   * base and heuristics are restored globally from the file, the search continues
+   * checkpointing to path unless checkpointPath() is already set; every other setting
+   * is taken from the current globals.
+   * @param path checkpoint written by {@link #checkpoint()}
+   * @return a solver holding the saved open list and counters, ready to {@link #start()}; null if path could not be read
+   */
+  public static Solver resume(Path path)
+  {
+    try
+    {
+      final long start = System.nanoTime();
+      final Checkpoint checkpoint = Checkpoint.read(path);
+
+      internalBase(checkpoint.internalBase);
+      pLength(checkpoint.pLength);
+      qLength(checkpoint.qLength);
+      heuristics(checkpoint.heuristics.toArray(new Heuristic[0]));
+      fixedWidth(checkpoint.fixedWidth);
+      if (Strategy.BEST_FIRST != strategy()) { Log.o("resuming w/strategy " + Strategy.BEST_FIRST); strategy(Strategy.BEST_FIRST); }
+      if (null == checkpointPath()) checkpointPath(path);
+
+      final Solver solver = new Solver(checkpoint.s);
+      if (solver.cacheFixedWidth != checkpoint.fixedWidth) throw new IllegalStateException("checkpoint node format does not match this target");
+
+      final long loaded =
+          solver.cacheFixedWidth ? checkpoint.load(solver.wordFormat, solver.words::offerAll) :
+          solver.cacheCompressMemory ? checkpoint.load(solver.packedFormat, solver.packed::offerAll) :
+          checkpoint.load(solver.nodeFormat, solver.open::offerAll);
+
+      solver.generated.set(checkpoint.generated);
+      solver.regenerated.set(checkpoint.regenerated);
+      solver.ignored.set(checkpoint.ignored);
+      solver.expanded.set(checkpoint.expanded);
+      solver.totalDepth.set(checkpoint.totalDepth);
+      solver.maxDepthSoFar.set(checkpoint.maxDepth);
+      solver.resumedTime = checkpoint.elapsed;
+
+      Log.o("resumed " + loaded + " nodes from " + path + " in " + (System.nanoTime() - start) / 1000000L + " ms");
+      return solver;
     }
-    catch (Throwable t) { return null; }
+    catch (Throwable t) { Log.e("failed to resume from " + path, t); return null; }
+  }
+
+  /**
+   * tests each node for the goal, then adds all of them to open at once
+   * @param open frontier to add to
+   * @param nodes nodes to attempt adding
+   * @param goal goal test
+   * @return false on goal or fatal exception, true indicates successful push
+   */
+  private <T> boolean push(Frontier<T> open, List<T> nodes, Predicate<T> goal)
+  {
+    for (T n : nodes) if (goal.test(n)) return false;
+    if (!open.offerAll(nodes)) { Log.e("node offer failed"); return false; }
+    if (!nodes.isEmpty()) idle.signal();
+    return true;
+  }
+
+  /**
+   * pop up to cacheBatch available nodes off open list, w/o waiting; {@link Idle#await} does the waiting
+   * @param open frontier to pop from
+   * @param batch receives the popped nodes
+   * @return false if goal was found, another worker got there first or an error occurred
+   */
+  private <T> boolean pop(Frontier<T> open, List<T> batch)
+  {
+    try { return 0 != open.drainTo(batch, cacheBatch) && null == goal(); }
+    catch (Throwable t) { return false; }
+  }
+
+  /**
+   * @param thread 1-based worker index
+   * @param expand an expand function
+   * @return expand, also counting each call toward the thread's stats
+   */
+  private <T> BiConsumer<T, List<T>> counted(final int thread, final BiConsumer<T, List<T>> expand)
+  {
+    final int index = (thread-1) * threadStatsStride;
+    final Throttle throttle = throttle();
+    return (n, children) -> { expand.accept(n, children); threadExpanded.incrementAndGet(index); throttle.tick(); };
   }
 
   /**
-   * expands the current node, pushing any generated children
+   * Like {@link #counted}, but for fork/join tasks, which are counted by pool worker.
+   * @param expand an expand function
+   * @return expand, also counting each call toward the calling worker's stats
+   */
+  private <T> BiConsumer<T, List<T>> pooled(final BiConsumer<T, List<T>> expand)
+  {
+    final int workers = threadExpanded.length() / threadStatsStride;
+    final ThreadLocal<Throttle> throttles = ThreadLocal.withInitial(this::throttle);
+    return (n, children) ->
+    {
+      expand.accept(n, children);
+      final Thread thread = Thread.currentThread();
+      final int worker = thread instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread) thread).getPoolIndex() % workers : 0;
+      threadExpanded.incrementAndGet(worker * threadStatsStride);
+      throttles.get().tick();
+    };
+  }
+
+  /** @return a throttle holding the calling thread to processorCap(), for one thread only */
+  private Throttle throttle() { return new Throttle(Solver::processorCap, throttled); }
+
+  /** @return true once workers should stop: goal found, search over or this thread interrupted */
+  private boolean halted() { return null != goal() || !solving() || Thread.currentThread().isInterrupted(); }
+
+  /** @return number of nodes waiting in whichever open list the search uses */
+  public int openSize() { return open.size() + words.size() + packed.size(); }
+
+  /** @return the open list the search uses */
+  private Frontier<?> activeOpen() { return cacheFixedWidth ? words : cacheCompressMemory ? packed : open; }
+
+  /**
+   * expands the current node, collecting any generated children
+   * @param n a node to expand
+   * @param children receives the valid children of n
+   */
+  private void expand(final Node n, final List<Node> children)
+  {
+    final int first = children.size();
+    generate(n, children);
+    if (children.size() != first) score(n, children.subList(first, children.size()));
+  }
+
+  /**
+   * the part of {@link #expand(Node, List)} that builds and validates children, w/o scoring them
    * @param n a node to expand
-   * @return true continues the search, false indicates completion
+   * @param children receives the valid children of n, h not yet set
    */
-  private boolean expand(final Node n)
+  private void generate(final Node n, final List<Node> children)
   {
     // stats
     if (cachePrintAllNodes) Log.o("expanding: " + n);
@@ -400,7 +801,7 @@ public class Solver implements Runnable, Serializable
     }
 
     // early interruptAndJoin if possible
-    if (n.depth >= cacheMaxDepth) return true;
+    if (n.depth >= cacheMaxDepth) return;
 
     // generate all node combinations
     for (int i = 0; i < cacheInternalBase; ++i)
@@ -409,14 +810,20 @@ public class Solver implements Runnable, Serializable
       {
         if (i > j && n.identicalFactors()) continue;
 
+        // reject children w/the wrong bit at the next depth before allocating them
+        if (cacheIncremental && !n.validChild(i, j))
+        {
+          ignored.incrementAndGet();
+          if (cachePrintAllNodes) Log.o("ignored: " + n + ":" + i + ":pBit:" + j + ":qBit");
+          continue;
+        }
+
         //final Node node = close(new Node(n, i, j));
-        final Node node = new Node(n, i, j);
+        final Node node = new Node(n, i, j, cacheIncremental);
         if (node.validFactors())
         {
           generated.incrementAndGet();
-          node.h = node.h(); // defer h() calc until necessary
-          if (cachePrintAllNodes) Log.o("generated: " + node);
-          if (!push(node)) return false;
+          children.add(node);
         }
         else
         {
@@ -425,15 +832,143 @@ public class Solver implements Runnable, Serializable
         }
       }
     }
+  }
 
-    return true;
+  /**
+   * scores the surviving children of one node together, since they share everything but their newest bits
+   * @param parent the node that was expanded
+   * @param siblings its valid children
+   */
+  private void score(final Node parent, final List<Node> siblings)
+  {
+    final double[] h = new double[siblings.size()];
+    cacheEvaluator.siblings(cacheTarget, parent, siblings, h);
+    for (int i = 0; i < h.length; ++i)
+    {
+      final Node node = siblings.get(i);
+      node.h = h[i];
+      if (cachePrintAllNodes) Log.o("generated: " + node);
+    }
+  }
+
+  /**
+   * Fixed-width counterpart of {@link #expand(Node, List)}. The child's partial product is
+   * built incrementally in two words and rejected before allocation if its bit at the
+   * new depth is wrong or it outgrows the target.
+   * @param n a node to expand
+   * @param children receives the valid children of n
+   */
+  private void expand(final WordNode n, final List<WordNode> children)
+  {
+    // stats
+    if (cachePrintAllNodes) Log.o("expanding: " + n);
+    if (cacheStats)
+    {
+      expanded.incrementAndGet();
+      maxDepthSoFar.set(Math.max(maxDepthSoFar.get(), n.depth));
+      totalDepth.addAndGet(n.depth);
+    }
+
+    // early interruptAndJoin if possible
+    if (n.depth >= cacheMaxDepth) return;
+
+    final int     d         = n.depth+1;
+    final boolean targetBit = testBit(cacheSHi, cacheSLo, d);
+    final boolean sBit      = testBit(n.sHi, n.sLo, d);
+
+    // generate all node combinations
+    for (int i = 0; i < 2; ++i)
+    {
+      for (int j = 0; j < 2; ++j)
+      {
+        if (i > j && n.identicalFactors()) continue;
+
+        // same test as Node.validChild(): the low bits of p and q decide the bit at depth d
+        if ((sBit ^ (0 != i && 0 != (n.qLo & 1L)) ^ (0 != j && 0 != (n.pLo & 1L))) != targetBit)
+        {
+          ignored.incrementAndGet();
+          if (cachePrintAllNodes) Log.o("ignored: " + n + ":" + i + ":pBit:" + j + ":qBit");
+          continue;
+        }
+
+        // s + i*q*2^d + j*p*2^d + i*j*2^2d, giving up as soon as it outgrows the target
+        long sHi = n.sHi, sLo = n.sLo;
+        boolean valid = true;
+        if (0 != i)
+        {
+          final long tHi = shiftHi(n.qHi, n.qLo, d), tLo = shiftLo(n.qLo, d);
+          valid = bitLength(n.qHi, n.qLo) + d <= cacheSLen2 && fits(sHi, sLo, tHi, tLo, cacheSLen2);
+          if (valid) { sHi = addHi(sHi, sLo, tHi, tLo); sLo += tLo; }
+        }
+        if (valid && 0 != j)
+        {
+          final long tHi = shiftHi(n.pHi, n.pLo, d), tLo = shiftLo(n.pLo, d);
+          valid = bitLength(n.pHi, n.pLo) + d <= cacheSLen2 && fits(sHi, sLo, tHi, tLo, cacheSLen2);
+          if (valid) { sHi = addHi(sHi, sLo, tHi, tLo); sLo += tLo; }
+        }
+        if (valid && 0 != i && 0 != j)
+        {
+          final int  d2  = d << 1;
+          final long tHi = d2 >= 64 ? 1L << (d2 - 64) : 0L, tLo = d2 < 64 ? 1L << d2 : 0L;
+          valid = d2 < cacheSLen2 && fits(sHi, sLo, tHi, tLo, cacheSLen2);
+          if (valid) { sHi = addHi(sHi, sLo, tHi, tLo); sLo += tLo; }
+        }
+        if (!valid)
+        {
+          ignored.incrementAndGet();
+          if (cachePrintAllNodes) Log.o("ignored: " + n + ":" + i + ":pBit:" + j + ":qBit");
+          continue;
+        }
+
+        // set the new bits and keep p <= q
+        final long f1Hi = 0 != i ? setHi(n.pHi, d) : n.pHi, f1Lo = 0 != i ? setLo(n.pLo, d) : n.pLo;
+        final long f2Hi = 0 != j ? setHi(n.qHi, d) : n.qHi, f2Lo = 0 != j ? setLo(n.qLo, d) : n.qLo;
+        final WordNode node = compare(f1Hi, f1Lo, f2Hi, f2Lo) <= 0 ?
+            new WordNode(d, f1Hi, f1Lo, f2Hi, f2Lo, sHi, sLo) :
+            new WordNode(d, f2Hi, f2Lo, f1Hi, f1Lo, sHi, sLo);
+
+        generated.incrementAndGet();
+        if (cachePrintAllNodes) Log.o("generated: " + node);
+        children.add(node);
+      }
+    }
+  }
+
+  /**
+   * compressMemory() counterpart of {@link #expand(Node, List)}: n is rebuilt in full,
+   * expanded as usual, and each child is packed back down to the two bits it adds.
+   * Adaptive searches keep every child whole unless the heap is under pressure.
+   * Goals are recorded here, while the children are still whole.
+   * @param n a node to expand
+   * @param children receives the valid children of n
+   */
+  private void expand(final PackedNode n, final List<PackedNode> children)
+  {
+    final Node full = n.unpack();
+    final List<Node> unpacked = new ArrayList<>(4);
+    expand(full, unpacked);
+
+    final MemoryPressure watch = pressure.get();
+    final boolean whole = null != watch && !watch.high();
+    for (Node child : unpacked)
+    {
+      goal(child);
+      children.add(whole || 0 == child.depth % packedStride ? new PackedCheckpoint(child) : new PackedNode(n, full, child));
+    }
   }
 
   public boolean solved() { return null != goal(); }
   public boolean solving() { return solving.get(); }
   public boolean paused() { return cachePaused; }
+
+  /** @return true while workers should hold: paused, or a background search on a busy machine */
+  private boolean held()
+  {
+    final SystemLoad system = load.get();
+    return cachePaused || (null != system && !system.idle());
+  }
   public void pause() { Log.o("search paused"); cachePaused = true; }
-  public void resume() { Log.o("search resumed"); cachePaused = false; }
+  public void resume() { Log.o("search resumed"); cachePaused = false; idle.wakeAll(); }
 
   public BigInteger semiprime() { return cacheS; }
 
@@ -441,7 +976,7 @@ public class Solver implements Runnable, Serializable
   private String statsToString(boolean detailed)
   {
     final long elapsedNanos = System.nanoTime() - startTime;
-    final long millis = elapsedNanos / 1000000L;
+    final long millis = (resumedTime + elapsedNanos) / 1000000L;
     final long seconds = millis / 1000L;
     final long minutes = seconds / 60L;
     final long hours = minutes / 60L;
@@ -476,13 +1011,89 @@ public class Solver implements Runnable, Serializable
 
         "<br>" +
 
-        (detailed ? "\nopened: " + open.size() + "\nclosed: " + closed.size() : "") +
+        (detailed ? threadStatsToString(elapsedNanos) + strategyToString() + pressureToString() + pipelineToString(elapsedNanos) + poolToString() + idleToString() + loadToString() + "\nopened: " + openSize() + spillToString() + checkpointToString() + "\nclosed: " + closed.size() : "") +
 
         "</center>"
 
         ;
   }
 
+  private String pipelineToString(long elapsedNanos)
+  {
+    if (null == pipeline) return "";
+    final double seconds = Math.max(1, elapsedNanos) / 1e9;
+    return
+        "\npipeline generators: " + statsToStringDecimalFormat.format(pipeline.expanded.get() / seconds) + " nodes/sec, " + pipeline.generatorsBlocked.get() + " waits for scorers" +
+        "\npipeline scorers: " + statsToStringDecimalFormat.format(pipeline.scored.get() / seconds) + " nodes/sec, queue " + pipeline.unscored.size() + "/" + pipeline.unscored.capacity() +
+            ", " + pipeline.scorersStarved.get() + " waits for generators, " + pipeline.scorersBlocked.get() + " waits for inserters" +
+        "\npipeline inserters: " + statsToStringDecimalFormat.format(pipeline.inserted.get() / seconds) + " nodes/sec, queue " + pipeline.scoredNodes.size() + "/" + pipeline.scoredNodes.capacity() +
+            ", " + pipeline.insertersStarved.get() + " waits for scorers";
+  }
+
+  private String poolToString()
+  {
+    if (null == pool) return "";
+    return "\nworkers: " + pool.live.get() + " running, target " + pool.target.get() + " of at most " + cacheMaxProcessors +
+        (cacheAutoProcessors ? " (auto" + (pool.settled ? ", settled" : "") + ", best " + statsToStringDecimalFormat.format(pool.best) + " nodes/sec, " +
+            statsToStringDecimalFormat.format(100 * pool.share) + "% of worker time in the frontier)" : "");
+  }
+
+  private String idleToString()
+  {
+    return "\nidle: " + idle.waiting.get() + " of " + idle.workers.getAsInt() + " workers waiting, " + idle.parks.get() + " parks" + (idle.quiet ? ", out of work" : "") +
+        "\nthrottled: " + TimeUnit.NANOSECONDS.toMillis(throttled.get()) + " ms parked to hold processorCap " + processorCap() + "%";
+  }
+
+  private String loadToString()
+  {
+    final SystemLoad system = load.get();
+    return null != system ? "\nsystem load: " + (system.idle() ? "idle" : "busy, workers held") + " (foreground at " + system.foreground() + "%, " + system.switches() + " switches)" : "";
+  }
+
+  private String pressureToString()
+  {
+    final MemoryPressure watch = pressure.get();
+    return null != watch ? "\nmemory pressure: " + (watch.high() ? "high" : "low") + " (old gen at " + watch.occupancy() + "% of memoryCap, " + watch.switches() + " switches)" : "";
+  }
+
+  private String checkpointToString()
+  {
+    return null != cacheCheckpoint ? "\ncheckpoints: " + checkpoints() + " written, " + checkpointsFailed() + " failed" : "";
+  }
+
+  private String spillToString()
+  {
+    final Frontier<?> frontier = activeOpen();
+    if (frontier instanceof OffHeapFrontier) return " (" + ((OffHeapFrontier<?>) frontier).bytes() + " bytes off heap)";
+    if (!(frontier instanceof SpillFrontier)) return "";
+    final SpillFrontier<?> spill = (SpillFrontier<?>) frontier;
+    return " (" + spill.spilled() + " on disk, " + spill.spills() + " spills, " + spill.bytesWritten() + " bytes written)";
+  }
+
+  private String strategyToString()
+  {
+    final DepthFirstSearch<?> search = null != deepWords ? deepWords : deep;
+    final BeamSearch<?> beam = null != beamWords ? beamWords : this.beam;
+    return
+        (null != search ? "\nthreshold: " + search.threshold() + "\niterations: " + search.iterations() : "") +
+        (null != beam ? "\nbeam levels: " + beam.levels() + "\nbeam size: " + beam.size() + "/" + beam.width() : "");
+  }
+
+  private String threadStatsToString(long elapsedNanos)
+  {
+    final StringBuilder sb = new StringBuilder(
+        "<table border=\"1\">" +
+        "<caption align=\"top\">Per-Thread Expansions</caption>" +
+        "<tr><th>thread</th><th>expanded</th><th>expanded/sec</th></tr>");
+    final double seconds = Math.max(1, elapsedNanos) / 1e9;
+    final long[] counts = threadExpanded();
+    for (int i = 0; i < counts.length; ++i)
+    {
+      sb.append("<tr><td>").append(i+1).append("</td><td>").append(counts[i]).append("</td><td>")
+          .append(statsToStringDecimalFormat.format(counts[i] / seconds)).append("</td></tr>");
+    }
+    return sb.append("</table><br>").toString();
+  }
 
   /**
    * goal test w/a somewhat optimized order of comparisons
@@ -490,13 +1101,29 @@ public class Solver implements Runnable, Serializable
    * @param n a node to test against the target
    * @return true if this is the goal or a goal node has been found
    */
-  private boolean goal(Node n) { return null == n ? null != goal() : (n.goal() && (goal.compareAndSet(null, n) || null != goal())); }
+  private boolean goal(Node n) { return null == n ? null != goal() : (n.goal() && found(n)); }
+  private boolean goal(PackedNode n) { return null != goal(); } // children are tested while unpacked, in expand()
+  private boolean goal(WordNode n) { return null == n ? null != goal() : (n.goal() && found(n.toNode())); }
+
+  /** records n as the goal unless another worker got there first, and wakes idle workers to stop */
+  private boolean found(Node n)
+  {
+    if (!goal.compareAndSet(null, n)) return null != goal();
+    idle.wakeAll();
+    return true;
+  }
   public Node goal() { return goal.get(); }
 
   public long generated() { return generated.get(); }
   public long regenerated() { return regenerated.get(); }
   public long ignored() { return ignored.get(); }
   public long expanded() { return expanded.get(); }
+  public long[] threadExpanded()
+  {
+    final long[] counts = new long[threadExpanded.length() / threadStatsStride];
+    for (int i = 0; i < counts.length; ++i) counts[i] = threadExpanded.get(i * threadStatsStride);
+    return counts;
+  }
   public long maxDepth() { return maxDepthSoFar.get(); }
   public long totalDepth() { return totalDepth.get(); }
   public long avgDepth()
@@ -508,6 +1135,12 @@ public class Solver implements Runnable, Serializable
   public long startTime() { return startTime; }
   public long endTime() { return endTime; }
   public long elapsed() { return endTime - startTime; }
+  public long checkpoints() { return checkpoints.get(); }
+  public long checkpointsFailed() { return checkpointsFailed.get(); }
+  public long throttledNanos() { return throttled.get(); }
+  public int workers() { return null != pool ? pool.live.get() : cacheProcessors; }
+  public long scored() { return null != pipeline ? pipeline.scored.get() : 0; }
+  public long inserted() { return null != pipeline ? pipeline.inserted.get() : 0; }
 
   public static boolean networkSearch() { return Solver.networkSearch.get(); }
   public static void networkSearch(boolean enabled) { Solver.networkSearch.set(enabled); }
@@ -524,6 +1157,12 @@ public class Solver implements Runnable, Serializable
   public static boolean favorPerformance() { return Solver.favorPerformance.get(); }
   public static void favorPerformance(boolean enabled) { Solver.favorPerformance.set(enabled); }
 
+  public static boolean incremental() { return Solver.incremental.get(); }
+  public static void incremental(boolean enabled) { Solver.incremental.set(enabled); }
+
+  public static boolean fixedWidth() { return Solver.fixedWidth.get(); }
+  public static void fixedWidth(boolean enabled) { Solver.fixedWidth.set(enabled); }
+
   public static boolean compressMemory() { return Solver.compressMemory.get(); }
   public static void compressMemory(boolean enabled) { Solver.compressMemory.set(enabled); }
 
@@ -536,21 +1175,63 @@ public class Solver implements Runnable, Serializable
   public static void background(boolean background) { Solver.background.set(background); }
   public static boolean background() { return background.get(); }
 
+  public static int idleMinutes() { return idleMinutes.get(); }
+  public static void idleMinutes(int minutes) { if (minutes < 0) Log.e("invalid idle minutes: " + minutes); else idleMinutes.set(minutes); }
+
   public static boolean printAllNodes() { return Solver.printAllNodes.get(); }
   public static void printAllNodes(boolean enabled) { Solver.printAllNodes.set(enabled); }
 
   public static PrintWriter csv() { return Solver.csv.get(); }
   public static void csv(PrintWriter csv) { Solver.csv.set(csv); }
 
+  public static Path checkpointPath() { return Solver.checkpointPath.get(); }
+  public static void checkpointPath(Path path) { Solver.checkpointPath.set(path); }
+
+  public static int checkpointPeriod() { return checkpointPeriod.get(); }
+  public static void checkpointPeriod(int minutes) { if (minutes < 1) Log.e("invalid checkpoint period: " + minutes); else checkpointPeriod.set(minutes); }
+
+  public static int scorers() { return scorers.get(); }
+  public static void scorers(int scorers) { if (scorers < 0) Log.e("invalid scorers: " + scorers); else Solver.scorers.set(scorers); }
+
+  public static int inserters() { return inserters.get(); }
+  public static void inserters(int inserters) { if (inserters < 1) Log.e("invalid inserters: " + inserters); else Solver.inserters.set(inserters); }
+
   public static void processors(int processors) { Solver.processors.set(processors); }
   public static int processors() { return processors.get(); }
 
+  public static boolean autoProcessors() { return autoProcessors.get(); }
+  public static void autoProcessors(boolean enabled) { Solver.autoProcessors.set(enabled); }
+
+  public static void beamWidth(int width) { if (width < 1) Log.e("invalid beam width: " + width); else Solver.beamWidth.set(width); }
+  public static int beamWidth() { return beamWidth.get(); }
+
   public static void processorCap(int cap) { Solver.processorCap.set(cap); }
   public static int processorCap() { return processorCap.get(); }
 
   public static void memoryCap(int cap) { Solver.memoryCap.set(cap); }
   public static int memoryCap() { return memoryCap.get(); }
 
+  public static int batch() { return batch.get(); }
+  public static void batch(int batch) { if (batch < 0) Log.e("invalid batch: " + batch); else Solver.batch.set(batch); }
+
+  /**
+   * Batch size used when batch() is 0. Larger batches amortize frontier locking
+   * across more expansions, at the cost of relaxing best-first order by up to
+   * batch * threads nodes, so it grows w/the thread count and is capped.
+   * @param threads number of workers sharing the frontier
+   * @return nodes to pop per frontier call
+   */
+  public static int autoBatch(int threads) { return Math.max(1, Math.min(64, 2 * threads)); }
+
+  public static Frontier.Type frontier() { return frontier.get(); }
+  public static void frontier(Frontier.Type type) { if (null == type) Log.e("invalid frontier"); else frontier.set(type); }
+
+  public static Strategy strategy() { return strategy.get(); }
+  public static void strategy(Strategy strategy) { if (null == strategy) Log.e("invalid strategy"); else Solver.strategy.set(strategy); }
+
+  public static int buckets() { return buckets.get(); }
+  public static void buckets(int buckets) { if (buckets < 1) Log.e("invalid buckets: " + buckets); else Solver.buckets.set(buckets); }
+
   public static int internalBase() { return internalBase.get(); }
   public static void internalBase(int base) { internalBase.set(base); }
 
@@ -584,7 +1265,7 @@ public class Solver implements Runnable, Serializable
 
   public static String csvHeader()
   {
-    return "heuristic(s),s,p,q,generated,ignored,expanded,open.size,closed.size,maxDepth,avgDepth,depth,h,hashCode,goal.s,goal.p,goal.q\n";
+    return "heuristic(s),s,p,q,generated,ignored,expanded,open.size,closed.size,maxDepth,avgDepth,depth,h,hashCode,goal.s,goal.p,goal.q,strategy,beamWidth\n";
   }
 
   public static long solvers() { return lifetimeSolvers.get(); }
@@ -614,18 +1295,29 @@ public class Solver implements Runnable, Serializable
    * @author Stephen Dunn
    * @since October 31, 2015
    */
-  public class Node implements Comparable<Node>
+  public class Node implements Comparable<Node>, HeuristicFunction.NodeView
   {
     private final boolean identicalFactors;
     private final int     hashCode;
     private final int     depth;
+    private final int     pBitCount, qBitCount; ///< maintained from the parent's, see HeuristicFunction.NodeView
+    private final int     pBitLength, qBitLength;
+    private int           hamming; ///< computed on first use, or inherited when this node adds no bits
     private double h = Double.POSITIVE_INFINITY; ///< the heuristic search factors for this node
 
     public final BigInteger p, q; ///< the candidate factors
     public final BigInteger s; ///< the partial factors for this node
 
     Node() { this(null, 1, 1); }
-    Node(final Node parent, int pBit, int qBit)
+    Node(final Node parent, int pBit, int qBit) { this(parent, pBit, qBit, false); }
+
+    /**
+     * @param parent the node being expanded, or null for the root
+     * @param pBit bit to set at the new depth of parent.p
+     * @param qBit bit to set at the new depth of parent.q
+     * @param incremental if true, s is derived from parent.s w/shifted adds instead of a full multiply
+     */
+    Node(final Node parent, int pBit, int qBit, boolean incremental)
     {
       this.depth = null != parent ? parent.depth+1 : 0;
 
@@ -637,13 +1329,42 @@ public class Solver implements Runnable, Serializable
       this.p = compare < 0 ? f1 : f2;
       this.q = compare < 0 ? f2 : f1;
 
-      this.s = p.multiply(q);
+      // the new bit either extends a factor to depth+1 bits or leaves its parent's counts alone
+      final int f1Count = (null != parent ? parent.pBitCount : 0) + (0 != pBit ? 1 : 0);
+      final int f2Count = (null != parent ? parent.qBitCount : 0) + (0 != qBit ? 1 : 0);
+      final int f1Length = 0 != pBit ? depth+1 : null != parent ? parent.pBitLength : 0;
+      final int f2Length = 0 != qBit ? depth+1 : null != parent ? parent.qBitLength : 0;
+      this.pBitCount = compare < 0 ? f1Count : f2Count;
+      this.qBitCount = compare < 0 ? f2Count : f1Count;
+      this.pBitLength = compare < 0 ? f1Length : f2Length;
+      this.qBitLength = compare < 0 ? f2Length : f1Length;
+      this.hamming = null != parent && 0 == pBit && 0 == qBit ? parent.hamming : -1; // same factors, same product
+
+      this.s = incremental && null != parent ? parent.product(pBit, qBit, depth) : p.multiply(q);
 
       // cache the hash for performance during table lookups
-      int hash = 37 * depth + s.hashCode();
-      hash = 37 * hash + p.hashCode();
-      hash = 37 * hash + q.hashCode();
-      this.hashCode = hash;
+      this.hashCode = hash(depth, p, q, s);
+    }
+
+    /**
+     * Rebuilds a node from its factors, e.g. when converting a fixed-width goal.
+     * @param depth depth of the node
+     * @param p the smaller factor
+     * @param q the larger factor
+     */
+    Node(int depth, BigInteger p, BigInteger q)
+    {
+      this.depth = depth;
+      this.identicalFactors = p.equals(q);
+      this.p = p;
+      this.q = q;
+      this.s = p.multiply(q);
+      this.pBitCount = p.bitCount();
+      this.qBitCount = q.bitCount();
+      this.pBitLength = p.bitLength();
+      this.qBitLength = q.bitLength();
+      this.hamming = -1;
+      this.hashCode = hash(depth, p, q, s);
     }
 
     @Override public String toString() { return s + "<sub>10</sub>:" + s.toString(cacheInternalBase) + "<sub>" + cacheInternalBase + "</sub>:" + p + ":p:" + q + ":q:" + depth + ":depth:" + h  + ":h:" + hashCode + ":hash"; }
@@ -651,11 +1372,57 @@ public class Solver implements Runnable, Serializable
     @Override public int compareTo(Node o) { return Double.compare(h(), o.h()); }
     @Override public int hashCode() { return hashCode; }
 
-    String toCsv() { return generated + "," + ignored + "," + expanded + "," + open.size() + "," + closed.size() + "," + maxDepth() + "," + avgDepth() + "," + depth + "," + h + "," + hashCode + "," + s + "," + p + "," + q; }
+    String toCsv() { return generated + "," + ignored + "," + expanded + "," + openSize() + "," + closed.size() + "," + maxDepth() + "," + avgDepth() + "," + depth + "," + h + "," + hashCode + "," + s + "," + p + "," + q; }
+
+    @Override public int depth() { return this.depth; }
+    @Override public int pBitCount() { return pBitCount; }
+    @Override public int qBitCount() { return qBitCount; }
+    @Override public int pBitLength() { return pBitLength; }
+    @Override public int qBitLength() { return qBitLength; }
 
-    int depth() { return this.depth; }
+    /** carries move arbitrary bits of s, so this one is counted in full, but only once per product */
+    @Override public int hamming()
+    {
+      int hamming = this.hamming;
+      if (hamming < 0) this.hamming = hamming = cacheS.xor(s).bitCount();
+      return hamming;
+    }
+    @Override public BigInteger p() { return p; }
+    @Override public BigInteger q() { return q; }
+    @Override public BigInteger s() { return s; }
     boolean identicalFactors() { return identicalFactors; }
 
+    /**
+     * (p + pBit*2^d)(q + qBit*2^d) = s + pBit*q*2^d + qBit*p*2^d + pBit*qBit*2^2d
+     * @param pBit bit that will be set at depth d of p
+     * @param qBit bit that will be set at depth d of q
+     * @param d the child's depth
+     * @return the child's partial product, computed in O(n) instead of O(n^2)
+     */
+    private BigInteger product(int pBit, int qBit, int d)
+    {
+      BigInteger product = s;
+      if (0 != pBit) product = product.add(q.shiftLeft(d));
+      if (0 != qBit) product = product.add(p.shiftLeft(d));
+      if (0 != pBit && 0 != qBit) product = product.add(BigInteger.ONE.shiftLeft(d << 1));
+      return product;
+    }
+
+    /**
+     * Checks the bit a child would fix at depth+1 without building it. The shifted
+     * terms of {@link #product(int, int, int)} are zero below the new depth, so no
+     * carry can reach it and only the lowest bit of each factor matters.
+     * @param pBit bit that would be set in p
+     * @param qBit bit that would be set in q
+     * @return true if the child's partial product could still match the target
+     */
+    boolean validChild(int pBit, int qBit)
+    {
+      final int d = depth+1;
+      final boolean bit = s.testBit(d) ^ (0 != pBit && q.testBit(0)) ^ (0 != qBit && p.testBit(0));
+      return bit == cacheS.testBit(d);
+    }
+
     /**
      * This function ensures that the current partial s resembles the target semiprime
      * in the currently fixed digit positions.
@@ -684,16 +1451,639 @@ public class Solver implements Runnable, Serializable
 
 
     /**
-     * Sums all desired heuristic functions.
+     * Averages all desired heuristic functions.
      * @return an estimate of this node's distance to goal, where 0 = goal
      */
     private double h()
     {
-      if (h != Double.POSITIVE_INFINITY) return h; h = 0;
-      final double numHeuristics = (double) cacheHeuristics.length;
-      for (Heuristic heuristic : cacheHeuristics) h += heuristic.apply(Solver.this, this);
-      return numHeuristics > 0 ? h / numHeuristics : h;
+      if (h != Double.POSITIVE_INFINITY) return h;
+      return h = cacheEvaluator.h(cacheTarget, this);
+    }
+
+  }
+
+  private static int hash(int depth, BigInteger p, BigInteger q, BigInteger s)
+  {
+    int hash = 37 * depth + s.hashCode();
+    hash = 37 * hash + p.hashCode();
+    hash = 37 * hash + q.hashCode();
+    return hash;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////
+  // 128-bit helpers for the fixed-width engine; values are (hi, lo) word pairs
+
+  private static int bitLength(long hi, long lo) { return 0 != hi ? 128 - Long.numberOfLeadingZeros(hi) : 64 - Long.numberOfLeadingZeros(lo); }
+  private static int bitCount(long hi, long lo) { return Long.bitCount(hi) + Long.bitCount(lo); }
+  private static boolean testBit(long hi, long lo, int i) { return 0 != (i >= 64 ? (hi >>> (i - 64)) & 1L : (lo >>> i) & 1L); }
+  private static long setHi(long hi, int i) { return i >= 64 ? hi | (1L << (i - 64)) : hi; }
+  private static long setLo(long lo, int i) { return i >= 64 ? lo : lo | (1L << i); }
+  private static long shiftHi(long hi, long lo, int i) { return 0 == i ? hi : i >= 64 ? lo << (i - 64) : (hi << i) | (lo >>> (64 - i)); }
+  private static long shiftLo(long lo, int i) { return i >= 64 ? 0L : lo << i; }
+  private static long addHi(long hi, long lo, long tHi, long tLo) { return hi + tHi + (Long.compareUnsigned(lo + tLo, lo) < 0 ? 1L : 0L); }
+  private static int compare(long aHi, long aLo, long bHi, long bLo) { final int c = Long.compareUnsigned(aHi, bHi); return 0 != c ? c : Long.compareUnsigned(aLo, bLo); }
+  private static long multiplyHi(long aHi, long aLo, long bHi, long bLo) { return unsignedMultiplyHigh(aLo, bLo) + aLo * bHi + aHi * bLo; }
+
+  /// high word of the unsigned 64x64 bit product, from 32-bit halves so it runs on Java 8
+  private static long unsignedMultiplyHigh(long a, long b)
+  {
+    final long a0 = a & 0xffffffffL, a1 = a >>> 32, b0 = b & 0xffffffffL, b1 = b >>> 32;
+    final long mid = a1 * b0 + ((a0 * b0) >>> 32);
+    return a1 * b1 + (mid >>> 32) + ((a0 * b1 + (mid & 0xffffffffL)) >>> 32);
+  }
+  private static BigInteger toBigInteger(long hi, long lo) { return unsigned(hi).shiftLeft(64).or(unsigned(lo)); }
+  private static BigInteger unsigned(long word) { return BigInteger.valueOf(word >>> 1).shiftLeft(1).or(BigInteger.valueOf(word & 1L)); }
+
+  /**
+   * @return true if (hi, lo) + (tHi, tLo) neither carries out of 128 bits nor exceeds len bits
+   */
+  private static boolean fits(long hi, long lo, long tHi, long tLo, int len)
+  {
+    final long c = Long.compareUnsigned(lo + tLo, lo) < 0 ? 1L : 0L;
+    final long t = hi + tHi;
+    if (Long.compareUnsigned(t, hi) < 0 || (0 != c && -1L == t)) return false;
+    return bitLength(t + c, lo + tLo) <= len;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////
+  // binary node format, shared by both engines; see NodeCodec for the layout
+
+  private int maxRecordBytes() { return NodeCodec.recordBytes(Math.max(0, cacheMaxDepth)); }
+
+  private final class NodeFormat implements NodeCodec<Node>
+  {
+    private final int maxBytes = maxRecordBytes();
+
+    @Override public int maxBytes() { return maxBytes; }
+    @Override public int bytes(Node n) { return NodeCodec.recordBytes(n.depth); }
+
+    @Override public void write(Node n, ByteBuffer to)
+    {
+      final int len = NodeCodec.factorBytes(n.depth);
+      to.putDouble(n.h()).putInt(n.depth);
+      NodeCodec.putFactor(to, n.p, len);
+      NodeCodec.putFactor(to, n.q, len);
+    }
+
+    @Override public Node read(ByteBuffer from)
+    {
+      final double h = from.getDouble();
+      final int depth = from.getInt(), len = NodeCodec.factorBytes(depth);
+      final Node n = new Node(depth, NodeCodec.getFactor(from, len), NodeCodec.getFactor(from, len));
+      n.h = h;
+      return n;
+    }
+  }
+
+  private final class WordNodeFormat implements NodeCodec<WordNode>
+  {
+    private final int maxBytes = maxRecordBytes();
+
+    @Override public int maxBytes() { return maxBytes; }
+    @Override public int bytes(WordNode n) { return NodeCodec.recordBytes(n.depth); }
+
+    @Override public void write(WordNode n, ByteBuffer to)
+    {
+      final int len = NodeCodec.factorBytes(n.depth);
+      to.putDouble(n.h).putInt(n.depth);
+      NodeCodec.putFactor(to, n.pHi, n.pLo, len);
+      NodeCodec.putFactor(to, n.qHi, n.qLo, len);
+    }
+
+    @Override public WordNode read(ByteBuffer from)
+    {
+      final double h = from.getDouble();
+      final int depth = from.getInt(), len = NodeCodec.factorBytes(depth);
+      final long pLo = NodeCodec.getFactorLo(from, len), pHi = NodeCodec.getFactorHi(from, len);
+      final long qLo = NodeCodec.getFactorLo(from, len), qHi = NodeCodec.getFactorHi(from, len);
+      return new WordNode(depth, pHi, pLo, qHi, qLo, h);
+    }
+  }
+
+  /**
+   * The best-first workers, which may be added and retired while the search runs.
+   * Worker i runs while i is at most the target; a lower target retires the
+   * highest workers as they finish their batch, or wakes them if they are parked.
+   *
+   * The target follows processors(), so it can be moved mid-search. In auto mode
+   * the pool starts w/one worker and adds one per period for as long as the last
+   * one raised expansions/sec by poolMinGain and workers spent less than
+   * poolMaxFrontierShare of their time in the frontier; once a worker fails either
+   * test it is retired and the count stays, up to processors().
+   */
+  private final class Pool
+  {
+    final AtomicReferenceArray<Thread> workers = new AtomicReferenceArray<>(cacheMaxProcessors); ///< worker i in slot i-1 while it runs
+    final AtomicInteger                live    = new AtomicInteger(0);
+    final AtomicInteger                target  = new AtomicInteger(0);
+    final AtomicLong                   busy    = new AtomicLong(0); ///< nanoseconds timed workers spent on batches
+    final AtomicLong                   blocked = new AtomicLong(0); ///< of those, nanoseconds in frontier calls
+    private final ReentrantLock        lock    = new ReentrantLock();
+    private final Condition            exited  = lock.newCondition();
+
+    // auto mode, only touched by the pool thread
+    private boolean settled = false; ///< set once a worker stopped paying for itself
+    private boolean warming = true; ///< set for the first period after a change, which new workers spend warming up
+    private double  best    = 0; ///< expansions/sec at the current count
+    private double  share   = 0; ///< frontier share of worker time over the last period
+
+    /** starts the workers, then follows the target until every worker finished */
+    void run()
+    {
+      long last = System.nanoTime(), lastExpanded = 0, lastBusy = 0, lastBlocked = 0;
+      try
+      {
+        resize(cacheAutoProcessors ? 1 : cacheProcessors);
+        while (0 != live.get())
+        {
+          lock.lockInterruptibly();
+          try { if (0 != live.get()) exited.await(poolPeriodMillis, TimeUnit.MILLISECONDS); }
+          finally { lock.unlock(); }
+          if (0 == live.get() || halted() || idle.quiet) continue;
+
+          final long now = System.nanoTime(), expanded = LongStream.of(threadExpanded()).sum(), busy = this.busy.get(), blocked = this.blocked.get();
+          final double rate = (expanded - lastExpanded) / ((now - last) / 1e9);
+          share = busy != lastBusy ? (blocked - lastBlocked) / (double) (busy - lastBusy) : 0;
+          last = now; lastExpanded = expanded; lastBusy = busy; lastBlocked = blocked;
+
+          // held workers expand nothing, and new ones are still warming up, so neither measures anything
+          if (held() || (cacheAutoProcessors && warming)) { warming = false; continue; }
+
+          final int ceiling = Math.max(1, Math.min(cacheMaxProcessors, processors()));
+          if (!cacheAutoProcessors) resize(ceiling);
+          else if (settled || target.get() >= ceiling) resize(Math.min(target.get(), ceiling));
+          else if (1 == target.get() && 0 == best || rate >= best * (1 + poolMinGain) && share < poolMaxFrontierShare) { best = rate; resize(target.get() + 1); }
+          else { settled = true; resize(target.get() - 1); Log.o("pool settled at " + target.get() + " workers"); }
+        }
+      }
+      catch (InterruptedException e) { for (int i = 0; i < workers.length(); ++i) { final Thread worker = workers.get(i); if (null != worker) worker.interrupt(); } }
+      catch (Throwable t) { Log.e(t); }
+    }
+
+    /**
+     * @param n workers wanted; the ones above it retire, missing ones up to it start
+     */
+    void resize(int n)
+    {
+      final int previous = target.getAndSet(n);
+      if (n < previous) idle.wakeAll();
+      if (n != previous) warming = true;
+
+      for (int i = 1; i <= n; ++i)
+      {
+        if (null != workers.get(i-1)) continue;
+        final int index = i;
+        final Thread worker = new Thread(() -> work(index), "worker " + i);
+        if (!workers.compareAndSet(i-1, null, worker)) continue;
+        live.incrementAndGet();
+        worker.setUncaughtExceptionHandler(handler);
+        worker.start();
+      }
+    }
+
+    /** records the time one worker spent in a batch, and how much of it in the frontier */
+    void timed(long popped, long expanding, long pushing, long pushed)
+    {
+      busy.addAndGet(pushed - popped);
+      blocked.addAndGet((expanding - popped) + (pushed - pushing));
+    }
+
+    private void work(int i)
+    {
+      try
+      {
+        Log.o("thread " + i + ": started");
+        Solver.this.work(i);
+      }
+      catch (Throwable ignored) {}
+      finally
+      {
+        workers.set(i-1, null);
+        live.decrementAndGet();
+        idle.wakeAll(); // the rest may now all be idle
+        lock.lock();
+        try { exited.signalAll(); }
+        finally { lock.unlock(); }
+        Log.o("thread " + i + ": finished");
+      }
     }
+  }
 
+  /**
+   * Keeps the workers' batches apart from checkpoints w/o a lock every batch
+   * shares. Each worker flags a padded slot of its own around a batch and then
+   * looks for a checkpoint; a checkpoint raises its own flag and then waits for
+   * every slot to clear. Both sides write before they read, so either the worker
+   * sees the checkpoint and steps back out, or the checkpoint sees the worker and
+   * waits for its batch to end. Workers only touch a lock while a checkpoint runs.
+   */
+  private static final class Epoch
+  {
+    private final ReentrantLock   writer = new ReentrantLock(); ///< held by the one checkpoint copying open
+    private final ReentrantLock   lock   = new ReentrantLock();
+    private final Condition       opened = lock.newCondition();
+    private final AtomicLongArray busy; ///< 1 while a worker is inside a batch, padded by threadStatsStride
+    private volatile boolean      closed = false; ///< set while a checkpoint copies open
+
+    Epoch(int workers) { this.busy = new AtomicLongArray(Math.max(1, workers) * threadStatsStride); }
+
+    /**
+     * Called by a worker before each batch; waits out a checkpoint in progress.
+     * @param thread 1-based worker index
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void enter(int thread) throws InterruptedException
+    {
+      final int slot = (thread-1) * threadStatsStride;
+      for (;;)
+      {
+        busy.set(slot, 1);
+        if (!closed) return;
+        busy.set(slot, 0);
+
+        lock.lockInterruptibly();
+        try { while (closed) opened.await(); }
+        finally { lock.unlock(); }
+      }
+    }
+
+    /** called by a worker after each batch */
+    void exit(int thread) { busy.lazySet((thread-1) * threadStatsStride, 0); }
+
+    /** keeps workers out of new batches and waits for the running ones to end */
+    void close()
+    {
+      writer.lock();
+      closed = true;
+      for (int i = 0; i < busy.length(); i += threadStatsStride) while (0 != busy.get(i)) Thread.yield();
+    }
+
+    /** lets the workers back in after close() */
+    void open()
+    {
+      lock.lock();
+      try { closed = false; opened.signalAll(); }
+      finally { lock.unlock(); writer.unlock(); }
+    }
+  }
+
+  /**
+   * Where workers wait for work. A worker that finds open empty, or the search
+   * held, i.e. paused or in the background on a busy machine, parks until a push,
+   * resume, idle machine, goal or interrupt wakes it, so an idle
+   * search costs no CPU. The last worker to go idle while open is empty and
+   * nothing is in flight ends the search for all of them: no worker holds a
+   * batch then, so no node can ever arrive.
+   *
+   * A worker counts itself waiting before it looks at open, and a pusher offers
+   * before it looks for waiters, so either the worker sees the node or the
+   * pusher sees the worker and wakes it. While a checkpoint copies open the
+   * search never counts as out of work; the workers look again once it is done.
+   */
+  private final class Idle
+  {
+    private final ReentrantLock lock    = new ReentrantLock();
+    private final Condition     wake    = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger(0); ///< workers in await()
+    private final AtomicLong    parks   = new AtomicLong(0);
+    private final IntSupplier   workers; ///< workers running, which an elastic pool may change
+    private final LongSupplier  inFlight; ///< nodes out of open that may still come back to it
+    private final AtomicInteger copying = new AtomicInteger(0); ///< checkpoints copying open
+    private volatile boolean    quiet   = false; ///< set once the search ran out of work
+
+    Idle(IntSupplier workers, LongSupplier inFlight)
+    {
+      this.workers = workers;
+      this.inFlight = inFlight;
+    }
+
+    /**
+     * Parks the calling worker until open has a node and the search is not paused.
+     * @param thread 1-based worker index
+     * @param open the frontier the worker pops from
+     * @return false once the worker should stop: goal found, search over, interrupted, retired or out of work
+     * @throws InterruptedException if interrupted while parked
+     */
+    boolean await(int thread, Frontier<?> open) throws InterruptedException
+    {
+      if (halted() || quiet || retired(thread)) return false;
+      if (!held() && !open.isEmpty()) return true;
+
+      lock.lockInterruptibly();
+      waiting.incrementAndGet();
+      try
+      {
+        while (!halted() && !quiet && !retired(thread))
+        {
+          final boolean held = held();
+          if (!held && !open.isEmpty()) return true;
+          if (!held && workers.getAsInt() == waiting.get() && 0 == inFlight.getAsLong() && 0 == copying.get()) { quiet = true; wake.signalAll(); break; }
+          parks.incrementAndGet();
+          wake.await();
+        }
+        return false;
+      }
+      finally { waiting.decrementAndGet(); lock.unlock(); }
+    }
+
+    /**
+     * Parks a thread that is not a worker, e.g. a pipeline stage, while the search is paused.
+     * @return true if the thread was parked
+     */
+    boolean hold()
+    {
+      if (!held()) return false;
+      lock.lock();
+      try
+      {
+        while (held() && !halted() && !quiet) { parks.incrementAndGet(); wake.await(); }
+        return true;
+      }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); return true; }
+      finally { lock.unlock(); }
+    }
+
+    private boolean retired(int thread) { return null != pool && thread > pool.target.get(); }
+
+    /** keeps the search from running out of work until thaw() */
+    void freeze() { copying.incrementAndGet(); }
+
+    /** ends a freeze() and wakes the workers to look at open again */
+    void thaw() { copying.decrementAndGet(); wakeAll(); }
+
+    /** wakes the waiting workers, if any, after nodes were pushed */
+    void signal() { if (0 != waiting.get()) wakeAll(); }
+
+    void wakeAll()
+    {
+      lock.lock();
+      try { wake.signalAll(); }
+      finally { lock.unlock(); }
+    }
+  }
+
+  /**
+   * Pipelined best-first search, used when scorers() is set. Workers only pop and
+   * generate; each family of children goes through a lock-free ring to the scorer
+   * threads, and scored nodes through another to the inserter threads, which add
+   * them to open in batches. Every stage is sized on its own, and a stage waiting
+   * on a full or empty ring is counted, so the counts show which stage holds the
+   * others back.
+   */
+  private final class Pipeline
+  {
+    final Ring<Node[]>  unscored    = new Ring<>(pipelineRing); ///< families: the parent, then its children
+    final Ring<Node>    scoredNodes = new Ring<>(pipelineRing);
+    final AtomicLong    inFlight    = new AtomicLong(0); ///< nodes popped or generated but not yet back in open
+    final AtomicInteger generators  = new AtomicInteger(cacheProcessors); ///< generators still running
+
+    // stage metrics
+    final AtomicLong expanded          = new AtomicLong(0);
+    final AtomicLong scored            = new AtomicLong(0);
+    final AtomicLong inserted          = new AtomicLong(0);
+    final AtomicLong generatorsBlocked = new AtomicLong(0); ///< waits on a full unscored ring
+    final AtomicLong scorersStarved    = new AtomicLong(0); ///< waits on an empty unscored ring
+    final AtomicLong scorersBlocked    = new AtomicLong(0); ///< waits on a full scored ring
+    final AtomicLong insertersStarved  = new AtomicLong(0); ///< waits on an empty scored ring
+
+    /** @return true once the goal is found, the search is over, or every node is back in open w/no generator left to pop it */
+    boolean done() { return halted() || (0 == generators.get() && 0 == inFlight.get()); }
+
+    /**
+     * generator stage, run by each worker in place of {@link #work}
+     * @param thread 1-based worker index
+     */
+    void generate(final int thread) throws InterruptedException
+    {
+      final List<Node> batch = new ArrayList<>(cacheBatch);
+      final List<Node> children = new ArrayList<>(cacheInternalBase * cacheInternalBase);
+      final Throttle throttle = throttle();
+      open.bind(thread-1);
+      try
+      {
+        // open may only be empty because its next nodes are still being scored; idle counts those as work
+        while (idle.await(thread, open))
+        {
+          if (!pop(open, batch)) continue;
+
+          inFlight.addAndGet(batch.size());
+          for (Node n : batch)
+          {
+            Solver.this.generate(n, children);
+            for (Node child : children) if (goal(child)) return;
+            if (!children.isEmpty())
+            {
+              final Node[] family = new Node[children.size() + 1];
+              family[0] = n;
+              for (int i = 0; i < children.size(); ++i) family[i+1] = children.get(i);
+              inFlight.addAndGet(children.size());
+              while (!unscored.offer(family)) { if (halted()) return; generatorsBlocked.incrementAndGet(); LockSupport.parkNanos(pipelineIdleNanos); }
+            }
+            inFlight.decrementAndGet();
+            children.clear();
+          }
+          expanded.addAndGet(batch.size());
+          threadExpanded.addAndGet((thread-1) * threadStatsStride, batch.size());
+          batch.clear();
+          throttle.tick();
+        }
+      }
+      finally { generators.decrementAndGet(); }
+    }
+
+    /** scorer stage */
+    void score()
+    {
+      final Throttle throttle = throttle();
+      while (!done())
+      {
+        final Node[] family = unscored.poll();
+        if (null == family) { scorersStarved.incrementAndGet(); if (!idle.hold()) LockSupport.parkNanos(pipelineIdleNanos); continue; }
+
+        final List<Node> siblings = Arrays.asList(family).subList(1, family.length);
+        Solver.this.score(family[0], siblings);
+        for (Node node : siblings)
+          while (!scoredNodes.offer(node)) { if (halted()) return; scorersBlocked.incrementAndGet(); LockSupport.parkNanos(pipelineIdleNanos); }
+        scored.addAndGet(siblings.size());
+        throttle.tick();
+      }
+    }
+
+    /** inserter stage */
+    void insert()
+    {
+      final List<Node> nodes = new ArrayList<>(cacheBatch << 2);
+      final Throttle throttle = throttle();
+      while (!done())
+      {
+        for (Node node; nodes.size() < cacheBatch << 2 && null != (node = scoredNodes.poll()); ) nodes.add(node);
+        if (nodes.isEmpty()) { insertersStarved.incrementAndGet(); if (!idle.hold()) LockSupport.parkNanos(pipelineIdleNanos); continue; }
+
+        if (!open.offerAll(nodes)) { Log.e("node offer failed"); return; }
+        inserted.addAndGet(nodes.size());
+        inFlight.addAndGet(-nodes.size());
+        idle.signal();
+        nodes.clear();
+        throttle.tick();
+      }
+    }
+  }
+
+  private final class PackedNodeFormat implements NodeCodec<PackedNode>
+  {
+    @Override public int maxBytes() { return nodeFormat.maxBytes(); }
+    @Override public int bytes(PackedNode n) { return NodeCodec.recordBytes(n.depth); }
+    @Override public void write(PackedNode n, ByteBuffer to) { nodeFormat.write(n.unpack(), to); }
+    @Override public PackedNode read(ByteBuffer from) { return new PackedCheckpoint(nodeFormat.read(from)); }
+  }
+
+  /**
+   * compressMemory() form of a {@link Node}: a parent reference and the two bits
+   * this depth adds to the parent's p and q, w/h and depth kept inline so the
+   * frontier never has to rebuild a node to order it. Every packedStride depths a
+   * {@link PackedCheckpoint} holds the whole node instead and cuts the chain, so
+   * rebuilding replays at most packedStride-1 levels and ancestors above the last
+   * checkpoint can be collected.
+   */
+  public class PackedNode implements Comparable<PackedNode>
+  {
+    private final PackedNode parent; ///< null for checkpoints
+    private final double     h;
+    private final int        depth;
+    private final byte       bits; ///< pBit | qBit << 1, relative to the parent's p and q
+
+    /**
+     * @param parent the packed node that was expanded
+     * @param from parent, unpacked
+     * @param child a child of from
+     */
+    PackedNode(PackedNode parent, Node from, Node child)
+    {
+      // Node keeps p <= q, so the child's factors may have swapped places
+      final boolean swapped = !child.p.clearBit(child.depth).equals(from.p);
+      final BigInteger p = swapped ? child.q : child.p, q = swapped ? child.p : child.q;
+      this.parent = parent;
+      this.h = child.h;
+      this.depth = child.depth;
+      this.bits = (byte) ((p.testBit(depth) ? 1 : 0) | (q.testBit(depth) ? 2 : 0));
+    }
+
+    private PackedNode(Node node)
+    {
+      this.parent = null;
+      this.h = node.h();
+      this.depth = node.depth;
+      this.bits = 0;
+    }
+
+    /**
+     * @return this node in full, rebuilt from the nearest checkpoint above it
+     */
+    Node unpack()
+    {
+      final byte[] path = new byte[packedStride];
+      int n = 0;
+      PackedNode cur = this;
+      for (; !(cur instanceof PackedCheckpoint); cur = cur.parent) path[n++] = cur.bits;
+
+      Node node = ((PackedCheckpoint) cur).node;
+      while (n > 0) { final byte b = path[--n]; node = new Node(node, b & 1, b >>> 1, cacheIncremental); }
+      node.h = h;
+      return node;
+    }
+
+    int depth() { return depth; }
+    double h() { return h; }
+
+    @Override public int compareTo(PackedNode o) { return Double.compare(h, o.h); }
+  }
+
+  /**
+   * A {@link PackedNode} that keeps its whole node, every packedStride depths.
+   */
+  public class PackedCheckpoint extends PackedNode
+  {
+    private final Node node;
+
+    PackedCheckpoint(Node node)
+    {
+      super(node);
+      this.node = node;
+    }
+
+    @Override Node unpack() { return node; }
+  }
+
+  /**
+   * Fixed-width counterpart of {@link Node} used when the target is at most 128 bits.
+   * p, q and s are stored as (hi, lo) word pairs, so the node itself is the only
+   * allocation made per child. Goals are converted back to a {@link Node} so callers
+   * see the same result as the BigInteger engine.
+   */
+  public class WordNode implements Comparable<WordNode>, HeuristicFunction.NodeView
+  {
+    final long pHi, pLo; ///< the smaller candidate factor
+    final long qHi, qLo; ///< the larger candidate factor
+    final long sHi, sLo; ///< the partial product p*q
+    final int  depth;
+    private final double h;
+
+    WordNode() { this(0, 0L, 1L, 0L, 1L, 0L, 1L); }
+    WordNode(int depth, long pHi, long pLo, long qHi, long qLo, long sHi, long sLo)
+    {
+      this.depth = depth;
+      this.pHi = pHi; this.pLo = pLo;
+      this.qHi = qHi; this.qLo = qLo;
+      this.sHi = sHi; this.sLo = sLo;
+
+      this.h = cacheEvaluator.h(cacheTarget, this);
+    }
+
+    /**
+     * Rebuilds a node whose h is already known, e.g. when decoding it.
+     */
+    WordNode(int depth, long pHi, long pLo, long qHi, long qLo, double h)
+    {
+      this.depth = depth;
+      this.pHi = pHi; this.pLo = pLo;
+      this.qHi = qHi; this.qLo = qLo;
+      this.sHi = multiplyHi(pHi, pLo, qHi, qLo); this.sLo = pLo * qLo;
+      this.h = h;
+    }
+
+    @Override public String toString() { return toBigInteger(sHi, sLo) + ":s:" + toBigInteger(pHi, pLo) + ":p:" + toBigInteger(qHi, qLo) + ":q:" + depth + ":depth:" + h + ":h"; }
+    @Override public int compareTo(WordNode o) { return Double.compare(h, o.h); }
+
+    @Override public int depth() { return depth; }
+    @Override public int pBitCount() { return bitCount(pHi, pLo); }
+    @Override public int qBitCount() { return bitCount(qHi, qLo); }
+    @Override public int pBitLength() { return bitLength(pHi, pLo); }
+    @Override public int qBitLength() { return bitLength(qHi, qLo); }
+    @Override public int hamming() { return bitCount(sHi ^ cacheSHi, sLo ^ cacheSLo); }
+    @Override public BigInteger p() { return toBigInteger(pHi, pLo); }
+    @Override public BigInteger q() { return toBigInteger(qHi, qLo); }
+    @Override public BigInteger s() { return toBigInteger(sHi, sLo); }
+    boolean identicalFactors() { return pHi == qHi && pLo == qLo; }
+
+    /**
+     * @return true if this node is the goal
+     * @see Node#goal()
+     */
+    boolean goal()
+    {
+      return
+          (0 == cachePLen2 || (1+depth) == cachePLen2) &&
+          (0 == cacheQLen2 || (1+depth) == cacheQLen2) &&
+          sLo == cacheSLo && sHi == cacheSHi &&
+          !(0 == pHi && 1L == pLo) &&
+          !(0 == qHi && 1L == qLo);
+    }
+
+    Node toNode()
+    {
+      final Node node = new Node(depth, toBigInteger(pHi, pLo), toBigInteger(qHi, qLo));
+      node.h = h;
+      return node;
+    }
   }
 }
@@ -0,0 +1,369 @@
+package com.snd.semiprime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * External-memory frontier: keeps the best nodes in an in-memory frontier and,
+ * whenever memory runs short, sorts the rest by h and writes them to a run file.
+ * Runs are read back through a sliding memory-mapped window and merged in h
+ * order: whenever the best spilled node beats the best in-memory node, a batch
+ * of the best spilled nodes is moved back into memory.
+ *
+ * Memory pressure is sampled on roughly one offer in {@link #DEFAULT_CHECK_PERIOD}
+ * so the hot path only pays for a random number. Only one thread spills at a
+ * time; the others keep working on whatever is still in memory.
+ *
+ * @param <T> node type
+ */
+public class SpillFrontier<T> implements Frontier<T>
+{
+  public static final int    DEFAULT_CHECK_PERIOD = 4096; ///< offers per memory check, on average
+  public static final int    DEFAULT_MIN_SPILL    = 1 << 16; ///< never write runs smaller than this
+  public static final int    DEFAULT_REFILL       = 1024; ///< spilled nodes moved back per merge
+  public static final double DEFAULT_KEEP         = 0.25; ///< share of the frontier left in memory by a spill
+  public static final int    DEFAULT_WINDOW       = 64 << 20; ///< bytes of a run mapped at once
+  public static final int    DEFAULT_BUFFER       = 1 << 20; ///< write buffer per spill
+
+  private final Frontier<T>                 memory;
+  private final NodeCodec<T>                codec;
+  private final ToDoubleFunction<? super T> h;
+  private final BooleanSupplier             full;
+
+  private final ReentrantLock      spillLock = new ReentrantLock();
+  private final ReentrantLock      runLock   = new ReentrantLock();
+  private final PriorityQueue<Run> runs      = new PriorityQueue<>(Comparator.comparingDouble((Run r) -> r.headH)); ///< guarded by runLock
+  private final AtomicLong         spilled   = new AtomicLong(0); ///< nodes currently on disk
+  private final AtomicLong         spills    = new AtomicLong(0);
+  private final AtomicLong         written   = new AtomicLong(0); ///< bytes
+  private volatile Path            dir       = null;
+
+  /**
+   * @param memory in-memory frontier holding the best nodes
+   * @param codec encodes nodes for the run files
+   * @param h priority of a node
+   * @param full true while memory use is above the allowed cap
+   */
+  public SpillFrontier(Frontier<T> memory, NodeCodec<T> codec, ToDoubleFunction<? super T> h, BooleanSupplier full)
+  {
+    this.memory = memory;
+    this.codec = codec;
+    this.h = h;
+    this.full = full;
+  }
+
+  @Override public boolean offer(T t)
+  {
+    final boolean accepted = memory.offer(t);
+    if (0 == ThreadLocalRandom.current().nextInt(DEFAULT_CHECK_PERIOD)) checkMemory();
+    return accepted;
+  }
+
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    final boolean accepted = memory.offerAll(ts);
+    if (ThreadLocalRandom.current().nextInt(DEFAULT_CHECK_PERIOD) < ts.size()) checkMemory();
+    return accepted;
+  }
+
+  @Override public T poll()
+  {
+    final T t = memory.poll();
+    return 0 == spilled.get() ? t : merge(t);
+  }
+
+  @Override public T poll(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    final T t = poll();
+    if (null != t) return t;
+    final T waited = memory.poll(timeout, unit);
+    return null != waited || 0 != spilled.get() ? merge(waited) : null;
+  }
+
+  @Override public int drainTo(Collection<? super T> to, int max)
+  {
+    if (0 == spilled.get()) return memory.drainTo(to, max);
+
+    int n = 0;
+    for (T t; n < max && null != (t = poll()); ++n) to.add(t);
+    return n;
+  }
+
+  @Override public void bind(int worker) { memory.bind(worker); }
+
+  @Override public int drainWorst(Collection<? super T> to, int max) { return memory.drainWorst(to, max); }
+
+  /**
+   * Copies the nodes in memory only; spilled nodes are not included, see {@link #snapshotRuns}.
+   */
+  @Override public int snapshot(Collection<? super T> to) { return memory.snapshot(to); }
+
+  /**
+   * Copies the nodes in memory and the next node of every run, and opens the
+   * unread rest of each run file, so together they hold the whole frontier.
+   * Nothing may take from or spill the frontier meanwhile.
+   * @param to receives the decoded nodes
+   * @return the still encoded rest of the runs; close it once copied
+   * @throws IOException if a run file could not be opened
+   */
+  public Runs snapshotRuns(Collection<? super T> to) throws IOException
+  {
+    final Runs rest = new Runs();
+    runLock.lock();
+    try
+    {
+      for (Run run : runs) { to.add(run.head); run.tail(rest); }
+    }
+    catch (IOException e) { rest.close(); throw e; }
+    finally { runLock.unlock(); }
+    memory.snapshot(to);
+    return rest;
+  }
+
+  @Override public int size() { return (int) Math.min(Integer.MAX_VALUE, memory.size() + spilled.get()); }
+
+  @Override public void clear()
+  {
+    memory.clear();
+    runLock.lock();
+    try { for (Run run : runs) run.close(); runs.clear(); spilled.set(0); }
+    finally { runLock.unlock(); }
+  }
+
+  public long spilled() { return spilled.get(); }
+  public long spills() { return spills.get(); }
+  public long bytesWritten() { return written.get(); }
+
+  /**
+   * @param t best in-memory node, or null if memory is empty
+   * @return the better of t and the best spilled node; the loser goes back to memory
+   */
+  private T merge(T t)
+  {
+    final double limit = null != t ? h.applyAsDouble(t) : Double.POSITIVE_INFINITY;
+    final List<T> refill = new ArrayList<>();
+
+    runLock.lock();
+    try
+    {
+      for (Run run; refill.size() < DEFAULT_REFILL && null != (run = runs.peek()) && run.headH < limit; )
+      {
+        runs.poll();
+        refill.add(run.head);
+        if (run.advance()) runs.offer(run);
+      }
+      spilled.addAndGet(-refill.size());
+    }
+    finally { runLock.unlock(); }
+
+    if (refill.isEmpty()) return t;
+    if (null != t) memory.offer(t);
+    memory.offerAll(refill.subList(1, refill.size()));
+    return refill.get(0);
+  }
+
+  private void checkMemory()
+  {
+    if (memory.size() < DEFAULT_MIN_SPILL || !full.getAsBoolean() || !spillLock.tryLock()) return;
+
+    // an interrupt would close the channel mid-write, so hold it until the run is done
+    final boolean interrupted = Thread.interrupted();
+    try { spill(); }
+    finally { spillLock.unlock(); if (interrupted) Thread.currentThread().interrupt(); }
+  }
+
+  /**
+   * Writes all but the best {@link #DEFAULT_KEEP} of memory to a new run. Only
+   * the worst tail leaves memory, so workers keep popping the best nodes while
+   * it is sorted and written.
+   */
+  private void spill()
+  {
+    final int size = memory.size();
+    final List<T> rest = new ArrayList<>(size - (int) (size * DEFAULT_KEEP));
+    memory.drainWorst(rest, size - (int) (size * DEFAULT_KEEP));
+    if (rest.isEmpty()) return;
+    rest.sort(Comparator.comparingDouble(h));
+
+    try
+    {
+      final Run run = write(rest);
+      runLock.lock();
+      try { if (run.advance()) runs.offer(run); spilled.addAndGet(rest.size()); }
+      finally { runLock.unlock(); }
+      spills.incrementAndGet();
+      Log.o("spilled " + rest.size() + " nodes to disk, " + spilled() + " spilled in total");
+    }
+    catch (Throwable t)
+    {
+      Log.e("spill failed, keeping nodes in memory", t);
+      memory.offerAll(rest);
+    }
+  }
+
+  /**
+   * @param nodes nodes sorted by h
+   * @return a run over the file the nodes were written to
+   */
+  private Run write(List<T> nodes) throws IOException
+  {
+    if (null == dir) synchronized (this) { if (null == dir) dir = Files.createTempDirectory("semiprime-spill"); }
+
+    final Path file = Files.createTempFile(dir, "run", ".bin");
+    file.toFile().deleteOnExit();
+
+    long length = 0;
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+    {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(DEFAULT_BUFFER, codec.maxBytes()));
+      for (T n : nodes)
+      {
+        if (buffer.remaining() < codec.bytes(n)) length += flush(channel, buffer);
+        codec.write(n, buffer);
+      }
+      length += flush(channel, buffer);
+    }
+
+    written.addAndGet(length);
+    return new Run(file, nodes.size(), length);
+  }
+
+  private static long flush(FileChannel channel, ByteBuffer buffer) throws IOException
+  {
+    buffer.flip();
+    final long n = buffer.remaining();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+    return n;
+  }
+
+  /**
+   * Spilled records copied out by {@link #snapshotRuns}: the unread end of each
+   * run file, on a channel of its own. An open channel keeps reading a file even
+   * once the run is merged away and deletes it.
+   */
+  public static final class Runs implements AutoCloseable
+  {
+    private final List<FileChannel> channels  = new ArrayList<>();
+    private final List<long[]>      ranges    = new ArrayList<>(); ///< (position, bytes) of each channel
+    private long                    nodes     = 0;
+
+    /**
+     * @return records in the runs
+     */
+    public long nodes() { return nodes; }
+
+    /**
+     * Appends every run's records to to.
+     * @param to channel to write to
+     * @return bytes written
+     * @throws IOException if a run could not be read or to written
+     */
+    public long transferTo(FileChannel to) throws IOException
+    {
+      long total = 0;
+      for (int i = 0; i < channels.size(); ++i)
+      {
+        final long position = ranges.get(i)[0], bytes = ranges.get(i)[1];
+        for (long n = 0; n < bytes; ) n += channels.get(i).transferTo(position + n, bytes - n, to);
+        total += bytes;
+      }
+      return total;
+    }
+
+    @Override public void close()
+    {
+      for (FileChannel channel : channels) { try { channel.close(); } catch (Throwable ignored) {} }
+      channels.clear();
+    }
+  }
+
+  /**
+   * One sorted run file, read sequentially through a mapped window.
+   */
+  private final class Run
+  {
+    private final Path        file;
+    private final FileChannel channel;
+    private final long        length;
+    private long              remaining;
+    private long              offset = 0; ///< file offset of the window
+    private MappedByteBuffer  window = null;
+
+    T      head  = null;
+    double headH = Double.POSITIVE_INFINITY;
+
+    Run(Path file, long count, long length) throws IOException
+    {
+      this.file = file;
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+      this.length = length;
+      this.remaining = count;
+    }
+
+    /**
+     * Decodes the next node into head.
+     * @return false once the run is exhausted or unreadable, after which it is deleted
+     */
+    boolean advance()
+    {
+      head = null; headH = Double.POSITIVE_INFINITY;
+      if (0 == remaining) { close(); return false; }
+
+      // mapping on an interrupted thread closes the channel, losing the run
+      final boolean interrupted = Thread.interrupted();
+      try
+      {
+        if (null == window || (window.remaining() < codec.maxBytes() && offset + window.limit() < length))
+        {
+          offset += null != window ? window.position() : 0;
+          window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(DEFAULT_WINDOW, length - offset));
+        }
+        head = codec.read(window);
+        headH = h.applyAsDouble(head);
+        --remaining;
+        return true;
+      }
+      catch (Throwable t)
+      {
+        Log.e("failed to read spilled nodes, " + remaining + " lost", t);
+        spilled.addAndGet(-remaining);
+        close();
+        return false;
+      }
+      finally { if (interrupted) Thread.currentThread().interrupt(); }
+    }
+
+    /// adds the records after head to rest; caller must hold runLock
+    void tail(Runs rest) throws IOException
+    {
+      final long position = offset + (null != window ? window.position() : 0);
+      rest.channels.add(FileChannel.open(file, StandardOpenOption.READ));
+      rest.ranges.add(new long[] { position, length - position });
+      rest.nodes += remaining;
+    }
+
+    void close()
+    {
+      window = null;
+      try { channel.close(); } catch (Throwable ignored) {}
+      try { Files.deleteIfExists(file); } catch (Throwable ignored) {}
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.snd.semiprime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frontier made of one local heap per worker. Children a worker generates stay
+ * in its own heap, so the hot part of the search stays in that worker's cache
+ * and its lock is almost never contended.
+ *
+ * A worker whose heap runs dry steals the best half of a random victim's heap.
+ * Every {@link #exchangePeriod} polls a worker also compares its best node w/a
+ * random victim's and takes the victim's nodes that beat it, so no worker can
+ * drift far from the globally best h.
+ *
+ * Workers claim their heap w/{@link #bind(int)}. Any other thread, e.g. one
+ * seeding the search or taking a checkpoint, owns no heap and spreads its calls
+ * over all of them in turn.
+ *
+ * @param <T> node type
+ */
+public class StealingFrontier<T extends Comparable<? super T>> implements Frontier<T>
+{
+  public static final int DEFAULT_EXCHANGE_PERIOD = 64;
+
+  private final List<Local>        locals;
+  private final int                exchangePeriod;
+  private final AtomicInteger      next  = new AtomicInteger(0); ///< round-robin heap for calls from unbound threads
+  private final LongAdder          size  = new LongAdder();
+  private final ThreadLocal<Local> bound = new ThreadLocal<>(); ///< heap owned by the calling worker, null if unbound
+
+  public StealingFrontier(int workers) { this(workers, DEFAULT_EXCHANGE_PERIOD); }
+
+  public StealingFrontier(int workers, int exchangePeriod)
+  {
+    if (workers < 1) throw new IllegalArgumentException("invalid worker count: " + workers);
+    if (exchangePeriod < 1) throw new IllegalArgumentException("invalid exchange period: " + exchangePeriod);
+
+    this.locals = new ArrayList<>(workers);
+    for (int i = 0; i < workers; ++i) this.locals.add(new Local());
+    this.exchangePeriod = exchangePeriod;
+  }
+
+  /**
+   * Gives the calling thread the heap of the worker, wrapping around if there
+   * are more workers than heaps.
+   */
+  @Override public void bind(int worker) { bound.set(locals.get(Math.floorMod(worker, locals.size()))); }
+
+  /// @return the caller's own heap, or the next heap in turn for an unbound thread
+  private Local local()
+  {
+    final Local local = bound.get();
+    return null != local ? local : locals.get(Math.floorMod(next.getAndIncrement(), locals.size()));
+  }
+
+  @Override public boolean offer(T t)
+  {
+    final Local local = local();
+    local.lock.lock();
+    try { local.offer(t); }
+    finally { local.lock.unlock(); }
+    size.increment();
+    return true;
+  }
+
+  @Override public boolean offerAll(Collection<? extends T> ts)
+  {
+    if (ts.isEmpty()) return true;
+    final Local local = local();
+    local.lock.lock();
+    try { for (T t : ts) local.offer(t); }
+    finally { local.lock.unlock(); }
+    size.add(ts.size());
+    return true;
+  }
+
+  @Override public T poll()
+  {
+    final Local local = local();
+
+    // periodically pull in anything a random victim holds that beats our best
+    if (local == bound.get() && ++local.polls % exchangePeriod == 0) exchange(local);
+
+    T t = local.poll();
+    if (null == t && steal(local)) t = local.poll();
+    if (null != t) size.decrement();
+    return t;
+  }
+
+  @Override public int drainTo(Collection<? super T> to, int max)
+  {
+    final Local local = local();
+    if (local == bound.get() && ++local.polls % exchangePeriod == 0) exchange(local);
+
+    int n = local.drainTo(to, max);
+    if (0 == n && steal(local)) n = local.drainTo(to, max);
+    size.add(-n);
+    return n;
+  }
+
+  /**
+   * Moves the better half of a victim's heap into ours, trying each victim once
+   * starting from a random one.
+   * @return true if anything was stolen
+   */
+  private boolean steal(Local thief)
+  {
+    final int start = ThreadLocalRandom.current().nextInt(locals.size());
+    for (int i = 0; i < locals.size(); ++i)
+    {
+      final Local victim = locals.get((start + i) % locals.size());
+      if (victim == thief || null == victim.top) continue;
+
+      final List<T> loot = victim.take(null);
+      if (loot.isEmpty()) continue;
+
+      thief.lock.lock();
+      try { loot.forEach(thief::offer); }
+      finally { thief.lock.unlock(); }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Takes the nodes of a random victim that are better than our current best.
+   */
+  private void exchange(Local local)
+  {
+    if (locals.size() < 2) return;
+
+    final Local victim = locals.get(ThreadLocalRandom.current().nextInt(locals.size()));
+    final T best = local.top, theirs = victim.top;
+    if (victim == local || null == theirs || (null != best && theirs.compareTo(best) >= 0)) return;
+
+    final List<T> loot = victim.take(best);
+    if (loot.isEmpty()) return;
+
+    local.lock.lock();
+    try { loot.forEach(local::offer); }
+    finally { local.lock.unlock(); }
+  }
+
+  /**
+   * Takes the same share from every heap, one heap lock at a time, so the others
+   * keep working meanwhile.
+   */
+  @Override public int drainWorst(Collection<? super T> to, int max)
+  {
+    final long total = size.sum();
+    if (total <= 0 || max <= 0) return 0;
+
+    int n = 0;
+    for (Local local : locals)
+    {
+      local.lock.lock();
+      try
+      {
+        n += HeapFrontier.drainWorst(local.heap, to, (int) Math.min(max - n, (local.heap.size() * (long) max + total - 1) / total));
+        local.top = local.heap.peek();
+      }
+      finally { local.lock.unlock(); }
+      if (n >= max) break;
+    }
+    size.add(-n);
+    return n;
+  }
+
+  /**
+   * Copies one heap at a time under its own lock; nodes stay in their heaps.
+   */
+  @Override public int snapshot(Collection<? super T> to)
+  {
+    int n = 0;
+    for (Local local : locals)
+    {
+      local.lock.lock();
+      try { to.addAll(local.heap); n += local.heap.size(); }
+      finally { local.lock.unlock(); }
+    }
+    return n;
+  }
+
+  @Override public int size() { return (int) size.sum(); }
+
+  @Override public void clear()
+  {
+    for (Local local : locals)
+    {
+      local.lock.lock();
+      try { local.heap.clear(); local.top = null; }
+      finally { local.lock.unlock(); }
+    }
+    size.reset();
+  }
+
+  private class Local
+  {
+    final ReentrantLock    lock = new ReentrantLock();
+    final PriorityQueue<T> heap = new PriorityQueue<>();
+    volatile T             top; ///< best node in heap, published for victims/thieves w/o locking
+    long                   polls; ///< only touched by the bound thread(s)
+
+    /// caller must hold lock
+    void offer(T t)
+    {
+      heap.offer(t);
+      top = heap.peek();
+    }
+
+    T poll()
+    {
+      lock.lock();
+      try { final T t = heap.poll(); top = heap.peek(); return t; }
+      finally { lock.unlock(); }
+    }
+
+    int drainTo(Collection<? super T> to, int max)
+    {
+      lock.lock();
+      try
+      {
+        int n = 0; T t;
+        while (n < max && null != (t = heap.poll())) { to.add(t); ++n; }
+        top = heap.peek();
+        return n;
+      }
+      finally { lock.unlock(); }
+    }
+
+    /**
+     * @param bound if non-null, only nodes better than bound are taken
+     * @return up to half of this heap's nodes, best first
+     */
+    List<T> take(T bound)
+    {
+      lock.lock();
+      try
+      {
+        final int limit = (heap.size() + 1) / 2;
+        final List<T> loot = new ArrayList<>(Math.min(limit, 64));
+        T t;
+        while (loot.size() < limit && null != (t = heap.peek()) && (null == bound || t.compareTo(bound) < 0)) loot.add(heap.poll());
+        top = heap.peek();
+        return loot;
+      }
+      finally { lock.unlock(); }
+    }
+  }
+}
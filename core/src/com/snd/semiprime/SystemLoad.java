@@ -0,0 +1,117 @@
+package com.snd.semiprime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Watches for CPU load that isn't ours, e.g. for {@link Solver#background()}, and
+ * reports whether the machine is idle.
+ *
+ * The machine turns idle once foreground load, i.e. all CPU time minus this
+ * process's, stayed under {@link #DEFAULT_BUSY} percent for the idle time, and
+ * turns busy on the first sample over it, so the caller can back off within a
+ * period. Both come from /proc/stat and /proc/self/stat; where /proc isn't
+ * available, the machine always counts as idle.
+ */
+public class SystemLoad implements AutoCloseable
+{
+  public static final int  DEFAULT_BUSY          = 10; ///< percent of all processors that foreground work may use on an idle machine
+  public static final long DEFAULT_PERIOD_MILLIS = 250L; ///< how often load is sampled
+
+  private static final Path stat     = Paths.get("/proc/stat");
+  private static final Path selfStat = Paths.get("/proc/self/stat");
+
+  private final IntSupplier minutes; ///< idle time required before the machine counts as idle
+  private final Runnable    changed;
+  private final Timer       timer = new Timer("system load", true);
+  private final AtomicLong  switches = new AtomicLong(0);
+
+  // guarded by timer: /proc counters at the last sample, in clock ticks
+  private long lastTotal = -1, lastBusy = -1, lastSelf = -1;
+  private long quietSince; ///< when foreground load last rose above DEFAULT_BUSY, in nanoTime
+
+  private volatile boolean idle = false;
+  private volatile int     foreground = 0;
+
+  /**
+   * Starts watching; {@link #close()} stops. The machine starts out busy until
+   * it has been quiet for the idle time.
+   * @param minutes idle time required, read again every period
+   * @param changed run on the timer thread whenever the machine turns idle or busy
+   */
+  public SystemLoad(IntSupplier minutes, Runnable changed)
+  {
+    this.minutes = minutes;
+    this.changed = changed;
+    this.quietSince = System.nanoTime();
+
+    sample();
+    timer.schedule(new TimerTask() { @Override public void run() { sample(); } }, DEFAULT_PERIOD_MILLIS, DEFAULT_PERIOD_MILLIS);
+  }
+
+  /**
+   * @return true once the machine has been quiet for the idle time, until foreground load returns
+   */
+  public boolean idle() { return idle; }
+
+  /**
+   * @return percent of all processors used by other processes over the last period, or -1 if unknown
+   */
+  public int foreground() { return foreground; }
+
+  /**
+   * @return times the machine turned idle or busy
+   */
+  public long switches() { return switches.get(); }
+
+  @Override public void close() { timer.cancel(); }
+
+  private void sample()
+  {
+    final int load = foregroundLoad();
+    foreground = load;
+
+    final long now = System.nanoTime();
+    if (load > DEFAULT_BUSY) { quietSince = now; idle(false); }
+    else idle(load < 0 || now - quietSince >= TimeUnit.MINUTES.toNanos(Math.max(0, minutes.getAsInt())));
+  }
+
+  private void idle(boolean idle)
+  {
+    if (this.idle == idle) return;
+    this.idle = idle;
+    switches.incrementAndGet();
+    Log.o("system " + (idle ? "idle" : "busy") + ": foreground load at " + foreground + "%");
+    changed.run();
+  }
+
+  /// @return percent of all processors used by other processes since the last sample, or -1 if unknown
+  private int foregroundLoad()
+  {
+    try
+    {
+      // cpu user nice system idle iowait irq softirq steal ...
+      final String[] cpu = Files.readAllLines(stat).get(0).trim().split("\\s+");
+      long total = 0;
+      for (int i = 1; i < cpu.length && i <= 8; ++i) total += Long.parseLong(cpu[i]);
+      final long busy = total - Long.parseLong(cpu[4]) - Long.parseLong(cpu[5]);
+
+      // pid (comm) state ppid ... utime stime, counted from after the comm, which may hold spaces
+      final String line = Files.readAllLines(selfStat).get(0);
+      final String[] self = line.substring(line.lastIndexOf(')') + 2).split(" ");
+      final long ours = Long.parseLong(self[11]) + Long.parseLong(self[12]);
+
+      final int load = lastTotal < 0 || total == lastTotal ? 0 : (int) (Math.max(0, (busy - lastBusy) - (ours - lastSelf)) * 100L / (total - lastTotal));
+      lastTotal = total; lastBusy = busy; lastSelf = ours;
+      return load;
+    }
+    catch (IOException | RuntimeException e) { return -1; }
+  }
+}
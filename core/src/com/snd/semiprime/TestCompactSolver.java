@@ -6,7 +6,6 @@ import java.math.BigInteger;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Random;
-import java.util.function.BiFunction;
 
 public class TestCompactSolver
 {
@@ -20,12 +19,9 @@ public class TestCompactSolver
     {
         CompactSolver solver = new CompactSolver();
 
-        BiFunction<CompactSolver, CompactSolver.Node, Double> h = (s, n) ->
+        HeuristicFunction h = (s, n) ->
         {
-            BigInteger p = n.p();
-            BigInteger q = n.q();
-
-            return (double) Math.abs(2*s.semiprime.bitCount() - (p.bitCount() + q.bitCount()));
+            return (double) Math.abs(2*s.bitCount - (n.pBitCount() + n.qBitCount()));
 
             //return n.s().xor(s.semiprime).bitCount() / (double) s.semiprime.bitLength();
 
@@ -104,6 +100,117 @@ public class TestCompactSolver
         }
     }
 
+    /**
+     * Solves the same targets w/each frontier implementation, recording expanded-to-goal and throughput.
+     */
+    public static boolean frontiers(int len, int runs, int numThreads)
+    {
+        CompactSolver solver = new CompactSolver();
+        CompactSolver.Heuristic heuristic = solver.new Heuristic("bit count", (s, n) ->
+                (double) Math.abs(2*s.bitCount - (n.pBitCount() + n.qBitCount())));
+
+        try (final PrintWriter csv = new PrintWriter(prefix + "frontiers.len-" + len + ".runs-" + runs + ".csv"))
+        {
+            csv.write("frontier, run, expanded, millis, nodes/sec\n");
+
+            for (int run = 0; run < runs; ++run)
+            {
+                Key key = new Key(len);
+                for (Frontier.Type type : Frontier.Type.values())
+                {
+                    long startTime = System.nanoTime();
+                    solver.goal(key.s).numThreads(numThreads).frontier(type).heuristics(heuristic).run();
+                    double millis = ((System.nanoTime() - startTime) / 1e6);
+                    double rate = solver.expanded() / (millis / 1e3);
+
+                    csv.write(type.name() + ", " + run + ", " + solver.expanded() + ", " + millis + ", " + rate + "\n"); csv.flush();
+                    Log.o(type + ": expanded: " + solver.expanded() + ", elapsed: " + millis + " ms, " + (long) rate + " nodes/sec");
+                }
+            }
+
+            return true;
+        }
+        catch (Throwable t) {
+            t.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Solves the same targets w/node objects and w/the node arena, recording expanded-to-goal,
+     * throughput and, for the arena, bytes per stored node.
+     */
+    public static boolean arena(int len, int runs, int numThreads)
+    {
+        CompactSolver solver = new CompactSolver();
+        CompactSolver.Heuristic heuristic = solver.new Heuristic("bit count", (s, n) ->
+                (double) Math.abs(2*s.bitCount - (n.pBitCount() + n.qBitCount())));
+
+        try (final PrintWriter csv = new PrintWriter(prefix + "arena.len-" + len + ".runs-" + runs + ".csv"))
+        {
+            csv.write("arena, run, expanded, millis, nodes/sec, bytes/node\n");
+
+            for (int run = 0; run < runs; ++run)
+            {
+                Key key = new Key(len);
+                for (boolean arena : new boolean[] { false, true })
+                {
+                    long startTime = System.nanoTime();
+                    solver.goal(key.s).numThreads(numThreads).arena(arena).heuristics(heuristic).run();
+                    double millis = ((System.nanoTime() - startTime) / 1e6);
+                    double rate = solver.expanded() / (millis / 1e3);
+                    long bytes = arena ? solver.arenaBytes() / Math.max(1, solver.arenaSize()) : 0;
+
+                    csv.write(arena + ", " + run + ", " + solver.expanded() + ", " + millis + ", " + rate + ", " + bytes + "\n"); csv.flush();
+                    Log.o((arena ? "arena" : "objects") + ": expanded: " + solver.expanded() + ", elapsed: " + millis + " ms, " + (long) rate + " nodes/sec" + (arena ? ", " + bytes + " bytes/node" : ""));
+                }
+            }
+
+            return true;
+        }
+        catch (Throwable t) {
+            t.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Solves the same targets w/CompactNodes, w/o and w/the materialization cache,
+     * recording expanded-to-goal, throughput and the bytes the cache ended up holding.
+     */
+    public static boolean materialization(int len, int runs, int numThreads, long budget)
+    {
+        CompactSolver solver = new CompactSolver().nodeClass(CompactSolver.CompactNode.class);
+        CompactSolver.Heuristic heuristic = solver.new Heuristic("bit count", (s, n) ->
+                (double) Math.abs(2*s.bitCount - (n.pBitCount() + n.qBitCount())));
+
+        try (final PrintWriter csv = new PrintWriter(prefix + "materialization.len-" + len + ".runs-" + runs + ".csv"))
+        {
+            csv.write("budget, run, expanded, millis, nodes/sec, cached bytes\n");
+
+            for (int run = 0; run < runs; ++run)
+            {
+                Key key = new Key(len);
+                for (long bytes : new long[] { 0, budget })
+                {
+                    long startTime = System.nanoTime();
+                    solver.goal(key.s).numThreads(numThreads).cacheBudget(bytes).heuristics(heuristic).run();
+                    double millis = ((System.nanoTime() - startTime) / 1e6);
+                    double rate = solver.expanded() / (millis / 1e3);
+
+                    csv.write(bytes + ", " + run + ", " + solver.expanded() + ", " + millis + ", " + rate + ", " + solver.cachedBytes() + "\n"); csv.flush();
+                    Log.o("budget " + bytes + ": expanded: " + solver.expanded() + ", elapsed: " + millis + " ms, " + (long) rate + " nodes/sec, " + solver.cachedBytes() + " bytes cached");
+                }
+            }
+
+            return true;
+        }
+        catch (Throwable t) {
+            t.printStackTrace();
+            return false;
+        }
+    }
+
     public static boolean entropy()
     {
         BigInteger target = new BigInteger("1111000001", 2);
@@ -119,6 +226,9 @@ public class TestCompactSolver
         try { new File(testDir).mkdir(); } catch (Throwable ignored) {}
         //trends(32, 32, 10000);
         //entropy();
+        //frontiers(24, 10, 4);
+        //arena(32, 10, 4);
+        //materialization(40, 10, 1, 64L << 20);
 
 
 
@@ -1,11 +1,17 @@
 package com.snd.semiprime;
 
+import com.snd.semiprime.client.ClientGui;
+
 import java.io.File;
 import java.io.PrintWriter;
 import java.math.BigInteger;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Random;
+import java.util.function.BiFunction;
 
 /**
  * @author Stephen Dunn
@@ -73,6 +79,239 @@ public class TestSolver
       }
   }
 
+  /**
+   * Measures raw search speed against a fixed target for a period of time, once
+   * with full multiplication per node and once with incremental partial products.
+   *
+   * @param name label to print alongside the results
+   * @param semiprime the target; expected to be too large to be solved in time
+   * @param millis how long to let each search run
+   * @param heuristics heuristics to search with
+   * @return true if everything goes okay, false otherwise
+   */
+  public static boolean throughput(String name, String semiprime, long millis, Heuristic... heuristics)
+  {
+    try
+    {
+      Log.disable();
+      Solver.init(); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+
+      final BigInteger target = new BigInteger(semiprime.trim().replace("\n",""));
+      for (boolean incremental : new boolean[] { false, true })
+      {
+        Solver.incremental(incremental);
+        final Solver solver = new Solver(target).start();
+        Thread.sleep(millis);
+        solver.interruptAndJoin();
+
+        final double seconds = solver.elapsed() / 1e9;
+        System.out.println(name + " (" + (incremental ? "incremental" : "multiply") + "): " +
+            solver.expanded() + " expanded, " + (long) (solver.expanded() / seconds) + " nodes/sec");
+      }
+
+      Solver.incremental(true);
+      Solver.release();
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Measures memory per open node and search speed against a fixed target, once
+   * w/full nodes (favorPerformance), once w/compressMemory's packed nodes and once
+   * letting heap pressure choose between them, the default. Memory is sampled
+   * after a collection while the search is paused, so it covers the open list
+   * and every ancestor it still keeps alive.
+   *
+   * @param name label to print alongside the results
+   * @param semiprime the target; expected to be too large to be solved in time
+   * @param millis how long to let each search run
+   * @param heuristics heuristics to search with
+   * @return true if everything goes okay, false otherwise
+   */
+  public static boolean compressMemory(String name, String semiprime, long millis, Heuristic... heuristics)
+  {
+    try
+    {
+      Log.disable();
+      Solver.init(); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+
+      final BigInteger target = new BigInteger(semiprime.trim().replace("\n",""));
+      final String[] modes = { "full nodes", "compressMemory", "adaptive" };
+      for (int mode = 0; mode < modes.length; ++mode)
+      {
+        Solver.favorPerformance(0 == mode);
+        Solver.compressMemory(1 == mode);
+        System.gc();
+        final long baseline = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+        final Solver solver = new Solver(target).start();
+        Thread.sleep(millis);
+        solver.pause();
+        Thread.sleep(200);
+        final long expanded = solver.expanded(), opened = solver.openSize();
+        final double seconds = (System.nanoTime() - solver.startTime()) / 1e9;
+        System.gc();
+        final long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory() - baseline;
+        solver.interruptAndJoin();
+        Solver.release();
+
+        System.out.println(name + " (" + modes[mode] + "): " +
+            opened + " open, " + (0 != opened ? used / opened : 0) + " bytes/node, " + (long) (expanded / seconds) + " nodes/sec");
+      }
+
+      Solver.compressMemory(false);
+      Solver.favorPerformance(false);
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Runs the target for millis w/each fixed worker count up to the machine's
+   * processors, then in auto mode, recording nodes/sec and, for auto mode, the
+   * worker count it settled on.
+   */
+  public static boolean workerPool(String name, String semiprime, long millis, Heuristic... heuristics)
+  {
+    try
+    {
+      Log.disable();
+      Solver.init(); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+
+      final BigInteger target = new BigInteger(semiprime.trim().replace("\n",""));
+      final int processors = Runtime.getRuntime().availableProcessors();
+      for (int workers = 1; workers <= processors + 1; ++workers)
+      {
+        final boolean auto = workers > processors;
+        Solver.processors(auto ? processors : workers);
+        Solver.autoProcessors(auto);
+
+        final Solver solver = new Solver(target).start();
+        Thread.sleep(millis);
+        final long expanded = solver.expanded();
+        final double seconds = (System.nanoTime() - solver.startTime()) / 1e9;
+        final int running = solver.workers();
+        solver.interruptAndJoin();
+        Solver.release();
+
+        System.out.println(name + " (" + (auto ? "auto" : workers + " workers") + "): " + (long) (expanded / seconds) + " nodes/sec" + (auto ? ", settled on " + running + " workers" : ""));
+      }
+
+      Solver.autoProcessors(false);
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Solves the same targets once w/each frontier implementation and records both
+   * throughput and the number of nodes expanded before the goal was found, so the
+   * search-quality cost of a relaxed frontier can be weighed against its speed.
+   *
+   * @param len len of the semiprimes to generate
+   * @param repeat number of targets to solve
+   * @param heuristics heuristics to search with
+   * @return true if everything goes okay, false otherwise
+   */
+  public static boolean frontiers(int len, int repeat, Heuristic... heuristics)
+  {
+    try (final PrintWriter csv = new PrintWriter(prefix + "frontiers.len-" + len + ".repeat-" + repeat + ".csv"))
+    {
+      Log.disable();
+      Solver.init(); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+      csv.write("frontier,run,expanded,generated,seconds,nodes/sec\n");
+
+      final Frontier.Type original = Solver.frontier();
+      for (int j = 0; j < repeat; ++j)
+      {
+        final Key key = new Key(len);
+        for (Frontier.Type type : Frontier.Type.values())
+        {
+          Solver.frontier(type);
+          final Solver solver = new Solver(key.s).start().join();
+          final double seconds = solver.elapsed() / 1e9;
+          csv.write(type.name() + "," + j + "," + solver.expanded() + "," + solver.generated() + "," + seconds + "," + (solver.expanded() / seconds) + "\n");
+          csv.flush();
+          System.out.println(type + ": " + solver.expanded() + " expanded to goal, " + (long) (solver.expanded() / seconds) + " nodes/sec");
+        }
+        Solver.release();
+      }
+
+      Solver.frontier(original);
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Runs the beam strategy w/each width against the same targets and writes one
+   * row per search to the usual solver CSV, whose last two columns record the
+   * strategy and width; failed searches leave the goal columns empty. The
+   * success rate per width is also printed.
+   *
+   * @param len len of the semiprimes to generate
+   * @param repeat number of targets to search
+   * @param widths beam widths to compare
+   * @param heuristics heuristics to search with
+   * @return true if everything goes okay, false otherwise
+   */
+  public static boolean beams(int len, int repeat, int[] widths, Heuristic... heuristics)
+  {
+    try (final PrintWriter csv = new PrintWriter(prefix + "beams.len-" + len + ".repeat-" + repeat + ".csv"))
+    {
+      Log.disable();
+      Solver.init(csv); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+
+      final Solver.Strategy original = Solver.strategy();
+      final int originalWidth = Solver.beamWidth();
+      final int[] solved = new int[widths.length];
+      Solver.strategy(Solver.Strategy.BEAM);
+      for (int j = 0; j < repeat; ++j)
+      {
+        final Key key = new Key(len);
+        for (int i = 0; i < widths.length; ++i)
+        {
+          Solver.beamWidth(widths[i]);
+          if (new Solver(key.s).start().join().solved()) ++solved[i];
+        }
+        Solver.release();
+      }
+
+      for (int i = 0; i < widths.length; ++i) System.out.println("width " + widths[i] + ": " + solved[i] + "/" + repeat + " solved");
+      Solver.strategy(original);
+      Solver.beamWidth(originalWidth);
+      Solver.csv(null);
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
   /**
    * Records each run of set bits (i.e. n bits in a row) and returns
    * the count of each occurrence. Position 0 in the array should be
@@ -192,10 +431,143 @@ public class TestSolver
     }
   }
 
+  /**
+   * Times per-node heuristic evaluation w/several heuristics selected: w/the loop
+   * nodes used to run, boxing each heuristic's h through a BiFunction; w/a plain
+   * loop over the primitive heuristics; and w/the evaluator from {@link Heuristic#fuse},
+   * over the same random BigInteger and fixed-width nodes. All must agree exactly,
+   * so the heuristics must be deterministic.
+   *
+   * @param len len of the semiprime to generate; at most 128 so fixed-width nodes can hold it
+   * @param nodes nodes of each kind to evaluate per round
+   * @param rounds times to evaluate them; the first half warms up
+   * @param heuristics heuristics to average
+   * @return true if everything goes okay, false otherwise
+   */
+  public static boolean fusedHeuristics(int len, int nodes, int rounds, Heuristic... heuristics)
+  {
+    try
+    {
+      Log.disable();
+      Solver.init(); Solver.callback((n) -> {});
+      Solver.heuristics(heuristics);
+
+      final Solver solver = new Solver(new Key(len).s);
+      final HeuristicFunction.Target target = solver.cacheTarget;
+      final HeuristicFunction fused = Heuristic.fuse(heuristics);
+      final List<BiFunction<HeuristicFunction.Target, HeuristicFunction.NodeView, Double>> boxed = new ArrayList<>(heuristics.length);
+      for (Heuristic heuristic : heuristics) boxed.add(heuristic::h);
+
+      // random walks down the tree, restarting from the root past half the target's length
+      final List<Solver.Node> big = new ArrayList<>(nodes);
+      final List<Solver.WordNode> words = new ArrayList<>(nodes);
+      for (Solver.Node n = solver.new Node(); big.size() < nodes; )
+      {
+        n = n.depth() < len/2 ? solver.new Node(n, random.nextInt(2), random.nextInt(2), true) : solver.new Node();
+        big.add(n);
+        words.add(word(solver, n));
+      }
+
+      for (List<? extends HeuristicFunction.NodeView> sample : Arrays.<List<? extends HeuristicFunction.NodeView>>asList(big, words))
+      {
+        long boxedNanos = 0, loopNanos = 0, fusedNanos = 0;
+        for (int round = 0; round < rounds; ++round)
+        {
+          double before = 0, loop = 0, sum = 0;
+          final long start = System.nanoTime();
+          for (HeuristicFunction.NodeView n : sample)
+          {
+            double h = 0;
+            for (BiFunction<HeuristicFunction.Target, HeuristicFunction.NodeView, Double> heuristic : boxed) h += heuristic.apply(target, n);
+            before += h / boxed.size();
+          }
+          final long boxedEnd = System.nanoTime();
+          for (HeuristicFunction.NodeView n : sample)
+          {
+            double h = 0;
+            for (Heuristic heuristic : heuristics) h += heuristic.h(target, n);
+            loop += h / heuristics.length;
+          }
+          final long loopEnd = System.nanoTime();
+          for (HeuristicFunction.NodeView n : sample) sum += fused.h(target, n);
+          final long fusedEnd = System.nanoTime();
+
+          if (loop != sum || before != sum) { System.err.println("fused evaluator disagrees: " + sum + " != " + loop + " / " + before); return false; }
+          if (round < rounds / 2) continue;
+          boxedNanos += boxedEnd - start;
+          loopNanos += loopEnd - boxedEnd;
+          fusedNanos += fusedEnd - loopEnd;
+        }
+
+        final double evaluated = (double) sample.size() * (rounds - rounds / 2);
+        System.out.println((sample == big ? "BigInteger" : "fixed-width") + " nodes, " + heuristics.length + " heuristics: boxed " + String.format("%.1f", boxedNanos / evaluated) +
+            " ns/node, loop " + String.format("%.1f", loopNanos / evaluated) + " ns/node, fused " + String.format("%.1f", fusedNanos / evaluated) + " ns/node");
+      }
+
+      // scoring a family together must give every child exactly the h it gets alone
+      final double[] together = new double[4];
+      long aloneNanos = 0, siblingsNanos = 0, children = 0;
+      for (int round = 0; round < rounds; ++round)
+      {
+        for (Solver.Node n : big)
+        {
+          if (n.depth() >= len/2) continue;
+          // twins, so neither side finds the other's cached Hamming distances
+          final List<Solver.Node> family = new ArrayList<>(4), twins = new ArrayList<>(4);
+          for (int i = 0; i < 2; ++i) for (int j = 0; j < 2; ++j) if (i <= j || !n.identicalFactors()) { family.add(solver.new Node(n, i, j, true)); twins.add(solver.new Node(n, i, j, true)); }
+          final List<Solver.WordNode> wordFamily = new ArrayList<>(4);
+          for (Solver.Node c : family) wordFamily.add(word(solver, c));
+
+          final long start = System.nanoTime();
+          double alone = 0;
+          for (Solver.Node c : twins) alone += fused.h(target, c);
+          final long aloneEnd = System.nanoTime();
+          fused.siblings(target, n, family, together);
+          final long siblingsEnd = System.nanoTime();
+
+          double sum = 0;
+          for (int i = 0; i < family.size(); ++i) sum += together[i];
+          if (alone != sum) { System.err.println("sibling scores disagree: " + sum + " != " + alone); return false; }
+          fused.siblings(target, word(solver, n), wordFamily, together);
+          for (int i = 0; i < wordFamily.size(); ++i)
+            if (together[i] != fused.h(target, wordFamily.get(i))) { System.err.println("fixed-width sibling scores disagree: " + together[i] + " != " + fused.h(target, wordFamily.get(i))); return false; }
+
+          if (round < rounds / 2) continue;
+          aloneNanos += aloneEnd - start;
+          siblingsNanos += siblingsEnd - aloneEnd;
+          children += family.size();
+        }
+      }
+      System.out.println("BigInteger families, " + heuristics.length + " heuristics: alone " +
+          String.format("%.1f", aloneNanos / (double) children) + " ns/child, siblings " + String.format("%.1f", siblingsNanos / (double) children) + " ns/child");
+
+      Solver.release();
+      return true;
+    }
+    catch (Throwable t)
+    {
+      System.err.println( t.getMessage() ); t.printStackTrace();
+      return false;
+    }
+  }
+
+  /// @return the fixed-width twin of a node of at most 128 bits
+  private static Solver.WordNode word(Solver solver, Solver.Node n)
+  {
+    return solver.new WordNode(n.depth(), n.p.shiftRight(64).longValue(), n.p.longValue(), n.q.shiftRight(64).longValue(), n.q.longValue(), 0);
+  }
+
   public static void main(String[] args)
   {
     try { new File(testDir).mkdir(); } catch (Throwable ignored) {}
     //if (!semiprimes(1024, 1000)) System.exit(1);
+    //if (!frontiers(48, 10, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(4);
+    //if (!beams(48, 20, new int[] { 64, 256, 1024, 4096, 16384 }, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(5);
+    //if (!throughput("RSA-220", ClientGui.RSA_220, 30000, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(3);
+    //if (!throughput("RSA-2048", ClientGui.RSA_2048, 30000, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(3);
+    //if (!compressMemory("RSA-220", ClientGui.RSA_220, 30000, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(6);
+    //if (!fusedHeuristics(128, 100000, 40, Heuristic.DIST_EXPECTED_SUMMED, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED, Heuristic.DIST_EXPECTED_GAUSSIAN, Heuristic.HAMMING)) System.exit(7);
+    //if (!workerPool("RSA-220", ClientGui.RSA_220, 20000, Heuristic.DIST_DIFF_BY_DEPTH_SUMMED)) System.exit(8);
     long startTime = System.nanoTime();
     if (!heuristics(80, 80, 1, Heuristic.values())) System.exit(2);
     double elapsedMs = (System.nanoTime() - startTime) / 1e6;
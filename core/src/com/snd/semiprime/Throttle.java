@@ -0,0 +1,87 @@
+package com.snd.semiprime;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Holds one thread to a percentage of a processor, e.g. {@link Solver#processorCap()}.
+ * The thread calls {@link #tick()} between units of work; once per window the
+ * CPU time it used is compared against the cap and the thread parks for as long
+ * as it would have to idle to stay under it.
+ *
+ * At a cap of 100 a tick only reads the cap, so an unthrottled search pays
+ * nothing. The cap is read on every tick, so a change applies within a window.
+ * Not thread safe: each thread needs its own Throttle.
+ */
+public class Throttle
+{
+  public static final long DEFAULT_WINDOW_NANOS = 20_000_000L; ///< wall time between measurements, short enough that parks don't show as stalls
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private static final boolean      cpuTime = cpuTimeEnabled();
+
+  private final IntSupplier cap; ///< percent of a processor allowed
+  private long              windowStart = 0; ///< wall time the window opened, 0 if none is open
+  private long              windowCpu   = 0; ///< thread CPU time when the window opened
+  private final AtomicLong  parked; ///< nanoseconds parked, possibly shared w/other throttles
+
+  /**
+   * @param cap percent of a processor the thread may use, read again every tick
+   * @param parked receives the time the thread spent parked, in nanoseconds
+   */
+  public Throttle(IntSupplier cap, AtomicLong parked)
+  {
+    this.cap = cap;
+    this.parked = parked;
+  }
+
+  /**
+   * Parks the calling thread if it used more than its share since the window
+   * opened. Call often, e.g. once per batch.
+   */
+  public void tick()
+  {
+    final int percent = cap.getAsInt();
+    if (percent >= 100) { windowStart = 0; return; }
+
+    final long now = System.nanoTime();
+    if (0 == windowStart) { open(now); return; }
+
+    final long wall = now - windowStart;
+    if (wall < DEFAULT_WINDOW_NANOS) return;
+
+    // idle until used / elapsed == percent, a window at a time so a new cap or a cancel applies at once
+    final long used = cpuTime ? threads.getCurrentThreadCpuTime() - windowCpu : wall;
+    for (long idle; !Thread.currentThread().isInterrupted() && (idle = used * 100L / Math.max(1, cap.getAsInt()) - (System.nanoTime() - windowStart)) > 0; )
+      park(Math.min(idle, DEFAULT_WINDOW_NANOS));
+    open(System.nanoTime());
+  }
+
+  private void open(long now)
+  {
+    windowStart = now;
+    windowCpu = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+  }
+
+  /// parks up to nanos; an interrupt ends the park early
+  private void park(long nanos)
+  {
+    final long start = System.nanoTime();
+    LockSupport.parkNanos(this, nanos);
+    parked.addAndGet(System.nanoTime() - start);
+  }
+
+  private static boolean cpuTimeEnabled()
+  {
+    try
+    {
+      if (!threads.isCurrentThreadCpuTimeSupported()) return false;
+      if (!threads.isThreadCpuTimeEnabled()) threads.setThreadCpuTimeEnabled(true);
+      return true;
+    }
+    catch (Throwable t) { return false; }
+  }
+}
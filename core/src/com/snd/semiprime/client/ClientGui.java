@@ -121,7 +121,7 @@ public class ClientGui extends JFrame implements DocumentListener
   private static final int DEFAULT_PROCESSORS     = Solver.processors();
   private static final int DEFAULT_PROCESSOR_CAP  = Solver.processorCap();
   private static final int DEFAULT_MEMORY_CAP     = Solver.memoryCap();
-  private static final int DEFAULT_IDLE_MINUTES   = 5;
+  private static final int DEFAULT_IDLE_MINUTES   = Solver.idleMinutes();
   private static final int DEFAULT_PORT           = 12288;
   private static final int DEFAULT_WIDTH          = 1024;
   private static final int DEFAULT_HEIGHT         = 768;
@@ -477,11 +477,11 @@ public class ClientGui extends JFrame implements DocumentListener
     // search tab
 
     chkFavorPerformance = getCheckBox(FAVOR_PERFORMANCE_NAME, DEFAULT_FAVOR_PERFORMANCE);
-    chkFavorPerformance.setToolTipText("<html>CPU performance will be favored, but (possibly lots) more memory will be consumed.<br>Watch caching if you have a solid state drive.</html>");
+    chkFavorPerformance.setToolTipText("<html>Always keep whole nodes: CPU performance will be favored, but (possibly lots) more memory will be consumed.<br>Watch caching if you have a solid state drive.<br>Unchecked, and w/Compress Memory unchecked, the search packs nodes only while memory runs low.</html>");
     chkFavorPerformance.addActionListener((e) -> Solver.favorPerformance(chkFavorPerformance.isSelected()));
 
     chkCompressMemory = getCheckBox(COMPRESS_MEMORY_NAME, DEFAULT_COMPRESS_MEMORY);
-    chkCompressMemory.setToolTipText("Memory will be spared, but possibly at great cost to CPU time.");
+    chkCompressMemory.setToolTipText("<html>Always pack nodes: memory will be spared, but possibly at great cost to CPU time.<br>Overrides Favor Performance.<br>Unchecked, and w/Favor Performance unchecked, the search packs nodes only while memory runs low.</html>");
     chkCompressMemory.addActionListener((e) -> Solver.compressMemory(chkCompressMemory.isSelected()));
 
     chkRestrictDisk = getCheckBox(RESTRICT_DISK_NAME, DEFAULT_RESTRICT_DISK);
@@ -513,7 +513,7 @@ public class ClientGui extends JFrame implements DocumentListener
     chkWriteCsv.addActionListener((e) -> { try { Solver.csv(chkWriteCsv.isSelected() ? new PrintWriter("search-results.csv") : null); } catch (Throwable t) { Log.e(t); } });
 
     chkBackground = getCheckBox("work in background", prefs.getBoolean(BACKGROUND_NAME, DEFAULT_BACKGROUND));
-    chkBackground.setToolTipText("Only run when system is idle.");
+    chkBackground.setToolTipText("Only run once the system has been idle for the idle time; step aside as soon as other programs need the CPU.");
     chkBackground.addActionListener(l -> { Solver.background(chkBackground.isSelected()); Log.o("background: " + (Solver.background() ? "yes" : "no")); });
 
     /////////////////////////////////////
@@ -711,6 +711,7 @@ public class ClientGui extends JFrame implements DocumentListener
           Solver.restrictDisk(chkRestrictDisk.isSelected());
           Solver.restrictNetwork(chkRestrictNetwork.isSelected());
           Solver.background(chkBackground.isSelected());
+          Solver.idleMinutes(sldIdle.getValue());
           Solver.printAllNodes(chkPrintAllNodes.isSelected());
           Solver.processors(sldProcessors.getValue());
           Solver.processorCap(sldProcessorCap.getValue());
@@ -988,6 +989,7 @@ public class ClientGui extends JFrame implements DocumentListener
     {
       if (sldIdle.getValueIsAdjusting()) return;
       int val = sldIdle.getValue();
+      Solver.idleMinutes(val);
       Log.o("idle delay before search: " + val + " minutes");
     });
 
@@ -1518,7 +1520,9 @@ public class ClientGui extends JFrame implements DocumentListener
         sldMemoryCap.setValue(memory);
         Solver.memoryCap(memory);
 
-        sldIdle.setValue(prefs.getInt(IDLE_MINUTES_NAME, DEFAULT_IDLE_MINUTES));
+        final int idleMinutes = prefs.getInt(IDLE_MINUTES_NAME, DEFAULT_IDLE_MINUTES);
+        sldIdle.setValue(idleMinutes);
+        Solver.idleMinutes(idleMinutes);
 
         chkBackground.setSelected(prefs.getBoolean(BACKGROUND_NAME, DEFAULT_BACKGROUND));
         chkAutoStart.setSelected(prefs.getBoolean(AUTOSTART_NAME, DEFAULT_AUTOSTART));